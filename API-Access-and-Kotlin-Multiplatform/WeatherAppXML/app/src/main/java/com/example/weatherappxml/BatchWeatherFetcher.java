@@ -0,0 +1,361 @@
+package com.example.weatherappxml;
+
+import android.util.Log;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+
+import org.json.JSONException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Refreshes a list of cities together. Cities whose OpenWeatherMap id is known
+ * are fetched through the group endpoint, up to {@link #GROUP_SIZE} per call.
+ * The rest, and anything the group call fails to return, fan out through
+ * {@link WeatherFetcher} with at most {@code maxConcurrent} requests in flight
+ * and a per-city timeout. Results are reported city by city as they arrive.
+ * Must be used from the main thread.
+ */
+public class BatchWeatherFetcher {
+
+    private static final String TAG = "BatchWeatherFetcher";
+    /** The group endpoint accepts at most 20 ids per call. */
+    private static final int GROUP_SIZE = 20;
+    public static final int DEFAULT_MAX_CONCURRENT = 4;
+    public static final int DEFAULT_TIMEOUT_MS = 8000;
+
+    public interface Listener {
+        /**
+         * @param index     Position of the city in the list passed to {@link #refresh}
+         * @param item      Decoded response, as from {@link WeatherFetcher.Listener#onWeather}
+         * @param fetchedAt When the response was fetched, in milliseconds since the epoch
+         * @param stale     True if this is a cached copy that is being refreshed
+         */
+        void onCity(int index, MeteoItem item, long fetchedAt, boolean stale);
+
+        /**
+         * @param index Position of the city in the list passed to {@link #refresh}
+         * @param error The Volley error
+         */
+        void onCityError(int index, VolleyError error);
+
+        /**
+         * Every city has either a fresh result or an error.
+         */
+        void onComplete();
+    }
+
+    private final RequestQueue requestQueue;
+    private final WeatherFetcher fetcher;
+    private final Favourites favourites;
+    private final String groupUrl;
+    private final String apiKey;
+    private final int maxConcurrent;
+    private final int timeoutMs;
+    private Batch current;
+
+    public BatchWeatherFetcher(RequestQueue requestQueue, WeatherFetcher fetcher, Favourites favourites,
+                               String groupUrl, String apiKey) {
+        this(requestQueue, fetcher, favourites, groupUrl, apiKey, DEFAULT_MAX_CONCURRENT, DEFAULT_TIMEOUT_MS);
+    }
+
+    public BatchWeatherFetcher(RequestQueue requestQueue, WeatherFetcher fetcher, Favourites favourites,
+                               String groupUrl, String apiKey, int maxConcurrent, int timeoutMs) {
+        this.requestQueue = requestQueue;
+        this.fetcher = fetcher;
+        this.favourites = favourites;
+        this.groupUrl = groupUrl;
+        this.apiKey = apiKey;
+        this.maxConcurrent = maxConcurrent;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Refresh {@code cities}, cancelling any refresh still running.
+     *
+     * @param cities   City names
+     * @param listener Receives results as they arrive
+     */
+    public void refresh(List<String> cities, Listener listener) {
+        cancel();
+        current = new Batch(new ArrayList<>(cities), listener);
+        current.start();
+    }
+
+    /**
+     * Cancel the running refresh, if any. Its listener is not called again.
+     */
+    public void cancel() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
+    }
+
+    private class Batch {
+        final ArrayList<String> cities;
+        final Listener listener;
+        final boolean[] done;
+        final Object[] tags;
+        final ArrayDeque<Integer> fanOut = new ArrayDeque<>();
+        final ArrayList<GroupRequest> groupRequests = new ArrayList<>();
+        int remaining;
+        int running;
+        boolean pumping;
+        boolean cancelled;
+
+        Batch(ArrayList<String> cities, Listener listener) {
+            this.cities = cities;
+            this.listener = listener;
+            this.done = new boolean[cities.size()];
+            this.tags = new Object[cities.size()];
+            this.remaining = cities.size();
+        }
+
+        void start() {
+            if (remaining == 0) {
+                listener.onComplete();
+                return;
+            }
+            ArrayList<Integer> grouped = new ArrayList<>();
+            for (int i = 0; i < cities.size(); i++) {
+                if (favourites.getCityId(cities.get(i)) == 0) {
+                    fanOut.add(i);
+                } else {
+                    grouped.add(i);
+                }
+            }
+            pump();
+            lookUpGrouped(grouped);
+        }
+
+        // WeatherFetcher serves the cache for fan-out cities; do the same here, then
+        // send whatever isn't fresh through the group endpoint.
+        void lookUpGrouped(ArrayList<Integer> grouped) {
+            if (grouped.isEmpty()) {
+                return;
+            }
+            WeatherCache cache = fetcher.getCache();
+            ArrayList<Integer> toFetch = new ArrayList<>();
+            int[] lookupsLeft = {grouped.size()};
+            for (int index : grouped) {
+                String city = cities.get(index);
+                cache.get(WeatherCache.keyFor(city, favourites.getCityId(city)), cached -> {
+                    if (cancelled) {
+                        return;
+                    }
+                    MeteoItem item = cached != null ? decodeCached(cached.body) : null;
+                    boolean fresh = item != null && cache.isFresh(cached);
+                    if (item != null) {
+                        listener.onCity(index, item, cached.fetchedAt, !fresh);
+                    }
+                    if (fresh) {
+                        finish(index);
+                    } else {
+                        toFetch.add(index);
+                    }
+                    if (--lookupsLeft[0] == 0) {
+                        for (int from = 0; from < toFetch.size() && !cancelled; from += GROUP_SIZE) {
+                            sendGroup(new ArrayList<>(toFetch.subList(from, Math.min(from + GROUP_SIZE, toFetch.size()))));
+                        }
+                    }
+                });
+            }
+        }
+
+        void sendGroup(ArrayList<Integer> indexes) {
+            // Two favourites can resolve to the same id; each gets the one result.
+            HashMap<Long, ArrayList<Integer>> byId = new HashMap<>();
+            StringBuilder ids = new StringBuilder();
+            for (int index : indexes) {
+                long id = favourites.getCityId(cities.get(index));
+                ArrayList<Integer> sameId = byId.get(id);
+                if (sameId == null) {
+                    sameId = new ArrayList<>(1);
+                    byId.put(id, sameId);
+                    if (ids.length() > 0) {
+                        ids.append(',');
+                    }
+                    ids.append(id);
+                }
+                sameId.add(index);
+            }
+            String url = groupUrl + "?id=" + ids + "&appid=" + apiKey + "&units=metric";
+            Log.d(TAG, "Fetching group of " + indexes.size());
+
+            GroupRequest request = new GroupRequest(url,
+                    items -> {
+                        WeatherCache cache = fetcher.getCache();
+                        SnapshotStore snapshots = fetcher.getSnapshotStore();
+                        long now = System.currentTimeMillis();
+                        for (GroupItem groupItem : items) {
+                            ArrayList<Integer> sameId = byId.remove(groupItem.item.getCityId());
+                            if (sameId == null) {
+                                continue;
+                            }
+                            // Keyed by id, so favourites sharing it share one entry.
+                            String key = WeatherCache.keyFor(cities.get(sameId.get(0)), groupItem.item.getCityId());
+                            cache.put(key, groupItem.body, null, null);
+                            if (snapshots != null) {
+                                snapshots.save(key, groupItem.item, now);
+                            }
+                            for (int index : sameId) {
+                                if (!done[index]) {
+                                    listener.onCity(index, groupItem.item, now, false);
+                                    finish(index);
+                                }
+                            }
+                        }
+                        // Ids the group call didn't return are retried one by one.
+                        for (ArrayList<Integer> missing : byId.values()) {
+                            fanOut.addAll(missing);
+                        }
+                        pump();
+                    },
+                    error -> {
+                        Log.w(TAG, "Group request failed, falling back to single requests", error);
+                        fanOut.addAll(indexes);
+                        pump();
+                    });
+            request.setRetryPolicy(new DefaultRetryPolicy(timeoutMs, 0, 1f));
+            groupRequests.add(request);
+            requestQueue.add(request);
+        }
+
+        // Start fan-out requests until maxConcurrent are in flight. Guarded because a
+        // fresh cache hit completes synchronously inside WeatherFetcher.fetch.
+        void pump() {
+            if (pumping) {
+                return;
+            }
+            pumping = true;
+            while (!cancelled && running < maxConcurrent && !fanOut.isEmpty()) {
+                int index = fanOut.poll();
+                if (done[index]) {
+                    continue;
+                }
+                running++;
+                fetchOne(index);
+            }
+            pumping = false;
+        }
+
+        void fetchOne(int index) {
+            String city = cities.get(index);
+            tags[index] = new Object();
+            fetcher.fetch(city, favourites.getCityId(city), timeoutMs, tags[index], new WeatherFetcher.Listener() {
+                @Override
+                public void onWeather(MeteoItem item, long fetchedAt, boolean stale) {
+                    if (cancelled) {
+                        return;
+                    }
+                    favourites.setCityId(city, item.getCityId());
+                    listener.onCity(index, item, fetchedAt, stale);
+                    if (!stale) {
+                        running--;
+                        finish(index);
+                        pump();
+                    }
+                }
+
+                @Override
+                public void onError(VolleyError error, boolean hadCachedCopy) {
+                    if (cancelled) {
+                        return;
+                    }
+                    running--;
+                    listener.onCityError(index, error);
+                    finish(index);
+                    pump();
+                }
+            });
+        }
+
+        void finish(int index) {
+            if (done[index]) {
+                return;
+            }
+            done[index] = true;
+            tags[index] = null;
+            if (--remaining == 0 && !cancelled) {
+                listener.onComplete();
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (GroupRequest request : groupRequests) {
+                request.cancel();
+            }
+            for (Object tag : tags) {
+                if (tag != null) {
+                    fetcher.cancel(tag);
+                }
+            }
+        }
+    }
+
+    private static MeteoItem decodeCached(String body) {
+        try {
+            return MeteoDecoder.decode(body);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One city from a group response: the decoded item and its slice of the body,
+     * which is cached like a single-city response.
+     */
+    private static class GroupItem {
+        final MeteoItem item;
+        final String body;
+
+        GroupItem(MeteoItem item, String body) {
+            this.item = item;
+            this.body = body;
+        }
+    }
+
+    private static class GroupRequest extends Request<List<GroupItem>> {
+        private final Response.Listener<List<GroupItem>> listener;
+
+        GroupRequest(String url, Response.Listener<List<GroupItem>> listener,
+                     Response.ErrorListener errorListener) {
+            super(Method.GET, url, errorListener);
+            this.listener = listener;
+            setShouldCache(false);
+        }
+
+        @Override
+        protected Response<List<GroupItem>> parseNetworkResponse(NetworkResponse response) {
+            if (response.data == null) {
+                return Response.error(new ParseError(response));
+            }
+            byte[] data = response.data;
+            ArrayList<GroupItem> items = new ArrayList<>();
+            try {
+                MeteoDecoder.decodeGroup(data, 0, data.length, (item, start, end) ->
+                        items.add(new GroupItem(item, new String(data, start, end - start, StandardCharsets.UTF_8))));
+            } catch (JSONException e) {
+                return Response.error(new ParseError(e));
+            }
+            return Response.success(items, null);
+        }
+
+        @Override
+        protected void deliverResponse(List<GroupItem> response) {
+            listener.onResponse(response);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.weatherappxml;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Read-only view of the bundled city list, compiled at build time by
+ * {@code CityIndexCompiler} and memory-mapped from the APK. Records are sorted
+ * by normalised name, so a prefix maps to one contiguous range; the most
+ * populous matches of every one- and two-letter prefix are precomputed.
+ *
+ * <p>Lookups don't allocate beyond the normalised query. Safe to share
+ * between threads.</p>
+ */
+public final class CityIndex {
+
+    public static final String ASSET_NAME = "cities.idx";
+    private static final int MAGIC = 0x43494458; // "CIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private static CityIndex instance;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int topK;
+    private final int keyOffsets;
+    private final int nameOffsets;
+    private final int populations;
+    private final int ids;
+    private final int latitudes;
+    private final int longitudes;
+    private final int countries;
+    private final int prefixTable;
+    private final int keyBlob;
+    private final int nameBlob;
+
+    /**
+     * @param context Any context
+     * @return The process-wide index, mapped on first use
+     * @throws IOException if the asset can't be mapped
+     */
+    public static synchronized CityIndex get(Context context) throws IOException {
+        if (instance == null) {
+            instance = open(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Map the index asset. It must be stored uncompressed in the APK.
+     *
+     * @param context Any context
+     * @return The index
+     * @throws IOException if the asset is missing, compressed or malformed
+     */
+    public static CityIndex open(Context context) throws IOException {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(ASSET_NAME);
+             FileInputStream in = fd.createInputStream()) {
+            return new CityIndex(in.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    fd.getStartOffset(), fd.getLength()));
+        }
+    }
+
+    /**
+     * @param buffer Index contents, big-endian, positioned anywhere
+     * @throws IOException if the buffer is not an index of this version
+     */
+    public CityIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a city index");
+        }
+        count = buffer.getInt(8);
+        topK = buffer.getInt(12);
+        int prefixSlots = buffer.getInt(16);
+        int keyBlobSize = buffer.getInt(20);
+
+        keyOffsets = HEADER_SIZE;
+        nameOffsets = keyOffsets + 4 * (count + 1);
+        populations = nameOffsets + 4 * (count + 1);
+        ids = populations + 4 * count;
+        latitudes = ids + 4 * count;
+        longitudes = latitudes + 4 * count;
+        countries = longitudes + 4 * count;
+        prefixTable = countries + 2 * count;
+        keyBlob = prefixTable + 4 * prefixSlots * topK;
+        nameBlob = keyBlob + keyBlobSize;
+        if (nameBlob + buffer.getInt(24) > buffer.capacity()) {
+            throw new IOException("Truncated city index");
+        }
+    }
+
+    /**
+     * Normalise a city name the way the index keys were built.
+     *
+     * @param name City name as typed
+     * @return Lower-case name without accents, hyphens or repeated spaces
+     */
+    public static String normalize(String name) {
+        String trimmed = name.replace('-', ' ').trim().replaceAll("\\s+", " ");
+        String decomposed = Normalizer.normalize(trimmed, Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Find the most populous cities whose name starts with {@code prefix}.
+     *
+     * @param prefix Text typed so far
+     * @param out    Receives record numbers, most populous first; its length is k
+     * @return Number of records written to {@code out}
+     */
+    public int search(String prefix, int[] out) {
+        byte[] query = normalize(prefix).getBytes(StandardCharsets.UTF_8);
+        if (query.length == 0 || out.length == 0) {
+            return 0;
+        }
+        if (query.length <= 2 && out.length <= topK && isLetter(query[0])
+                && (query.length == 1 || isLetter(query[1]))) {
+            int slot = query.length == 1 ? query[0] - 'a' : 26 + (query[0] - 'a') * 26 + (query[1] - 'a');
+            int base = prefixTable + 4 * slot * topK;
+            int n = 0;
+            while (n < out.length) {
+                int record = buffer.getInt(base + 4 * n);
+                if (record < 0) {
+                    break;
+                }
+                out[n++] = record;
+            }
+            return n;
+        }
+
+        int from = bound(query, false);
+        int to = bound(query, true);
+        int n = 0;
+        for (int record = from; record < to; record++) {
+            int population = getPopulation(record);
+            int pos = n;
+            while (pos > 0 && getPopulation(out[pos - 1]) < population) {
+                pos--;
+            }
+            if (pos == out.length) {
+                continue;
+            }
+            if (n < out.length) {
+                n++;
+            }
+            System.arraycopy(out, pos, out, pos + 1, n - pos - 1);
+            out[pos] = record;
+        }
+        return n;
+    }
+
+    private static boolean isLetter(byte c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    // First record whose key, cut to the query's length, is >= query (or > query if upper).
+    private int bound(byte[] query, boolean upper) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = comparePrefix(mid, query);
+            if (cmp < 0 || (upper && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int comparePrefix(int record, byte[] query) {
+        int start = keyBlob + buffer.getInt(keyOffsets + 4 * record);
+        int length = buffer.getInt(keyOffsets + 4 * (record + 1)) - buffer.getInt(keyOffsets + 4 * record);
+        int n = Math.min(length, query.length);
+        for (int i = 0; i < n; i++) {
+            int a = buffer.get(start + i) & 0xff;
+            int b = query[i] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length >= query.length ? 0 : -1;
+    }
+
+    /**
+     * @param record Record number
+     * @return The city's name as spelled in the source list
+     */
+    public String getName(int record) {
+        int start = buffer.getInt(nameOffsets + 4 * record);
+        int end = buffer.getInt(nameOffsets + 4 * (record + 1));
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(nameBlob + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param record Record number
+     * @return ISO 3166 country code
+     */
+    public String getCountry(int record) {
+        short packed = buffer.getShort(countries + 2 * record);
+        return new String(new char[]{(char) ((packed >> 8) & 0xff), (char) (packed & 0xff)});
+    }
+
+    /**
+     * @param record Record number
+     * @return GeoNames id, which OpenWeatherMap also uses as its city id
+     */
+    public int getCityId(int record) {
+        return buffer.getInt(ids + 4 * record);
+    }
+
+    public int getPopulation(int record) {
+        return buffer.getInt(populations + 4 * record);
+    }
+
+    public double getLatitude(int record) {
+        return buffer.getFloat(latitudes + 4 * record);
+    }
+
+    public double getLongitude(int record) {
+        return buffer.getFloat(longitudes + 4 * record);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.weatherappxml;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resolves coordinates to the nearest city of the bundled {@link CityIndex},
+ * without a reverse-geocoding call. The {@link KdTree} is built from the
+ * index once, on a background thread, the first time it is needed.
+ */
+public final class CityLocator {
+
+    private static final String TAG = "CityLocator";
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static CityLocator instance;
+
+    private final CityIndex index;
+    private final KdTree tree;
+
+    public interface Callback {
+        /**
+         * @param index  The city index
+         * @param record Record of the nearest city, or -1 if none could be found
+         */
+        void onCity(CityIndex index, int record);
+    }
+
+    public CityLocator(CityIndex index) {
+        this.index = index;
+        double[] latLon = new double[2 * index.size()];
+        for (int record = 0; record < index.size(); record++) {
+            latLon[2 * record] = index.getLatitude(record);
+            latLon[2 * record + 1] = index.getLongitude(record);
+        }
+        tree = new KdTree(latLon);
+    }
+
+    /**
+     * @return Record of the city closest to the location, or -1 if the index is empty
+     */
+    public int nearest(double latitude, double longitude) {
+        return tree.nearest(latitude, longitude);
+    }
+
+    /**
+     * Find the nearest city in the background.
+     *
+     * @param context  Any context
+     * @param callback Called on the main thread
+     */
+    public static void findNearest(Context context, double latitude, double longitude, Callback callback) {
+        Context app = context.getApplicationContext();
+        executor.execute(() -> {
+            CityIndex cityIndex = null;
+            int record = -1;
+            try {
+                CityLocator locator = get(app);
+                cityIndex = locator.index;
+                record = locator.nearest(latitude, longitude);
+            } catch (IOException e) {
+                Log.e(TAG, "City index unavailable", e);
+            }
+            CityIndex result = cityIndex;
+            int found = record;
+            mainHandler.post(() -> callback.onCity(result, found));
+        });
+    }
+
+    private static CityLocator get(Context context) throws IOException {
+        if (instance == null) {
+            long start = SystemClock.elapsedRealtime();
+            instance = new CityLocator(CityIndex.get(context));
+            Log.d(TAG, "Built k-d tree of " + instance.tree.size() + " cities in "
+                    + (SystemClock.elapsedRealtime() - start) + " ms");
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.weatherappxml;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The user's favourite cities, in the order they were added, plus the
+ * OpenWeatherMap city id learned for each one. The ids let the dashboard use
+ * the group endpoint, which only accepts ids.
+ */
+public class Favourites {
+
+    private static final String PREF_NAME = "favourites";
+    private static final String KEY_CITIES = "cities";
+    private static final String KEY_ID_PREFIX = "id:";
+
+    private final SharedPreferences prefs;
+    private final ArrayList<String> cities = new ArrayList<>();
+
+    public Favourites(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        String stored = prefs.getString(KEY_CITIES, "");
+        for (String city : stored.split("\n")) {
+            if (!city.isEmpty()) {
+                cities.add(city);
+            }
+        }
+    }
+
+    /**
+     * @return Favourite city names, oldest first
+     */
+    public List<String> getCities() {
+        return Collections.unmodifiableList(cities);
+    }
+
+    public boolean contains(String cityName) {
+        return indexOf(cityName) >= 0;
+    }
+
+    /**
+     * Add a city unless an equivalent name (see {@link WeatherCache#normalize}) is already there.
+     *
+     * @param cityName City name as displayed
+     * @return True if the city was added
+     */
+    public boolean add(String cityName) {
+        if (cityName == null || cityName.trim().isEmpty() || contains(cityName)) {
+            return false;
+        }
+        cities.add(cityName.trim());
+        save(prefs.edit()).apply();
+        return true;
+    }
+
+    public void remove(String cityName) {
+        int index = indexOf(cityName);
+        if (index >= 0) {
+            cities.remove(index);
+            save(prefs.edit()).remove(KEY_ID_PREFIX + WeatherCache.normalize(cityName)).apply();
+        }
+    }
+
+    /**
+     * @param cityName City name
+     * @return The remembered city id, or 0 if none is known yet
+     */
+    public long getCityId(String cityName) {
+        return prefs.getLong(KEY_ID_PREFIX + WeatherCache.normalize(cityName), 0);
+    }
+
+    /**
+     * Remember the id the API returned for a city.
+     *
+     * @param cityName City name as requested
+     * @param cityId   The response's {@code id}
+     */
+    public void setCityId(String cityName, long cityId) {
+        if (cityId != 0 && getCityId(cityName) != cityId) {
+            prefs.edit().putLong(KEY_ID_PREFIX + WeatherCache.normalize(cityName), cityId).apply();
+        }
+    }
+
+    private int indexOf(String cityName) {
+        String key = WeatherCache.normalize(cityName);
+        for (int i = 0; i < cities.size(); i++) {
+            if (WeatherCache.normalize(cities.get(i)).equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private SharedPreferences.Editor save(SharedPreferences.Editor editor) {
+        return editor.putString(KEY_CITIES, String.join("\n", cities));
+    }
+}
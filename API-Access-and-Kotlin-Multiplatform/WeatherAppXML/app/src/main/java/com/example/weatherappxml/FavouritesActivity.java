@@ -0,0 +1,133 @@
+package com.example.weatherappxml;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.ListView;
+import android.widget.ProgressBar;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.Volley;
+
+/**
+ * Dashboard of the favourite cities, refreshed together by {@link BatchWeatherFetcher}.
+ * Tap a row to open it in {@link MainActivity}; long-press to remove it.
+ */
+public class FavouritesActivity extends AppCompatActivity {
+
+    private static final String TAG = "FavouritesActivity";
+    static final String GROUP_URL = "https://api.openweathermap.org/data/2.5/group";
+
+    private Favourites favourites;
+    private SnapshotStore snapshots;
+    private BatchWeatherFetcher batchFetcher;
+    private FavouritesAdapter adapter;
+    private ProgressBar progressBar;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_favourites);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+
+        favourites = new Favourites(this);
+        RequestQueue requestQueue = Volley.newRequestQueue(this);
+        WeatherFetcher fetcher = new WeatherFetcher(requestQueue, new WeatherCache(this),
+                MainActivity.API_URL, MainActivity.API_KEY);
+        snapshots = SnapshotStore.get(this);
+        fetcher.setSnapshotStore(snapshots);
+        batchFetcher = new BatchWeatherFetcher(requestQueue, fetcher, favourites, GROUP_URL, MainActivity.API_KEY);
+
+        progressBar = findViewById(R.id.progressBar);
+        ListView listView = findViewById(R.id.lvFavourites);
+        listView.setEmptyView(findViewById(R.id.tvFavouritesEmpty));
+        adapter = new FavouritesAdapter(getLayoutInflater());
+        adapter.attach(listView);
+
+        listView.setOnItemClickListener((parent, view, position, id) -> {
+            setResult(RESULT_OK, getIntent().putExtra(MainActivity.EXTRA_CITY, adapter.getCity(position)));
+            finish();
+        });
+        listView.setOnItemLongClickListener((parent, view, position, id) -> {
+            String city = adapter.getCity(position);
+            favourites.remove(city);
+            Toast.makeText(this, getString(R.string.favourite_removed, city), Toast.LENGTH_SHORT).show();
+            refresh();
+            return true;
+        });
+
+        refresh();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_favourites, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_refresh) {
+            refresh();
+            return true;
+        }
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onDestroy() {
+        batchFetcher.cancel();
+        super.onDestroy();
+    }
+
+    /**
+     * Refresh every favourite. Rows fill in as each city arrives.
+     */
+    private void refresh() {
+        adapter.setCities(favourites.getCities());
+        progressBar.setVisibility(View.VISIBLE);
+        batchFetcher.refresh(favourites.getCities(), new BatchWeatherFetcher.Listener() {
+            @Override
+            public void onCity(int index, MeteoItem item, long fetchedAt, boolean stale) {
+                adapter.setItem(index, item, fetchedAt);
+            }
+
+            @Override
+            public void onCityError(int index, VolleyError error) {
+                String city = adapter.getCity(index);
+                Log.e(TAG, "Refresh failed for " + city, error);
+                adapter.setFailed(index);
+                if (adapter.getItem(index) == null) {
+                    snapshots.latest(WeatherCache.keyFor(city, favourites.getCityId(city)), snapshot -> {
+                        // The list may have been reloaded meanwhile.
+                        if (snapshot != null && !isDestroyed() && index < adapter.getCount()
+                                && city.equals(adapter.getCity(index))) {
+                            adapter.setSnapshot(index, snapshot);
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                progressBar.setVisibility(View.GONE);
+            }
+        });
+    }
+}
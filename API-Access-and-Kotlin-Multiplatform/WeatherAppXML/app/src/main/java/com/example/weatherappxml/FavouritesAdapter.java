@@ -0,0 +1,162 @@
+package com.example.weatherappxml;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One row per favourite city. Rows start empty and are filled in one at a time
+ * as results arrive; only the affected row is rebound, and row views are
+ * recycled through a view holder.
+ */
+public class FavouritesAdapter extends BaseAdapter {
+
+    private final LayoutInflater inflater;
+    private final ArrayList<String> cities = new ArrayList<>();
+    private final ArrayList<MeteoItem> items = new ArrayList<>();
+    private final ArrayList<Boolean> failed = new ArrayList<>();
+    private ListView listView;
+
+    private static class ViewHolder {
+        final TextView city;
+        final TextView description;
+        final TextView temperature;
+        final ImageView icon;
+
+        ViewHolder(View row) {
+            city = row.findViewById(R.id.tvFavouriteCity);
+            description = row.findViewById(R.id.tvFavouriteDescription);
+            temperature = row.findViewById(R.id.tvFavouriteTemperature);
+            icon = row.findViewById(R.id.ivFavouriteIcon);
+        }
+    }
+
+    public FavouritesAdapter(LayoutInflater inflater) {
+        this.inflater = inflater;
+    }
+
+    /**
+     * Attach to the list so single rows can be rebound in place.
+     *
+     * @param listView The list showing this adapter
+     */
+    public void attach(ListView listView) {
+        this.listView = listView;
+        listView.setAdapter(this);
+    }
+
+    /**
+     * Replace the rows, keeping any result already shown for a city that is still listed.
+     *
+     * @param newCities City names, in display order
+     */
+    public void setCities(List<String> newCities) {
+        ArrayList<MeteoItem> kept = new ArrayList<>(newCities.size());
+        for (String city : newCities) {
+            int old = cities.indexOf(city);
+            kept.add(old >= 0 ? items.get(old) : null);
+        }
+        cities.clear();
+        cities.addAll(newCities);
+        items.clear();
+        items.addAll(kept);
+        failed.clear();
+        for (int i = 0; i < cities.size(); i++) {
+            failed.add(Boolean.FALSE);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @param position  Row
+     * @param decoded   Response as decoded by {@link MeteoDecoder}
+     * @param fetchedAt When it was fetched; shown if a later refresh fails
+     */
+    public void setItem(int position, MeteoItem decoded, long fetchedAt) {
+        items.set(position, WeatherFormat.forDisplay(decoded, fetchedAt));
+        failed.set(position, Boolean.FALSE);
+        rebind(position);
+    }
+
+    /**
+     * Show a stored snapshot for a row whose refresh failed.
+     *
+     * @param position Row
+     * @param snapshot Last stored snapshot of the row's city
+     */
+    public void setSnapshot(int position, SnapshotStore.Snapshot snapshot) {
+        items.set(position, WeatherFormat.forDisplay(snapshot.item, snapshot.fetchedAt));
+        setFailed(position);
+    }
+
+    public void setFailed(int position) {
+        failed.set(position, Boolean.TRUE);
+        rebind(position);
+    }
+
+    public String getCity(int position) {
+        return cities.get(position);
+    }
+
+    @Override
+    public int getCount() {
+        return cities.size();
+    }
+
+    @Override
+    public MeteoItem getItem(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        if (convertView == null) {
+            convertView = inflater.inflate(R.layout.item_favourite, parent, false);
+            convertView.setTag(new ViewHolder(convertView));
+        }
+        bind((ViewHolder) convertView.getTag(), position);
+        return convertView;
+    }
+
+    // Rebind a visible row without a full notifyDataSetChanged().
+    private void rebind(int position) {
+        if (listView == null) {
+            notifyDataSetChanged();
+            return;
+        }
+        View row = listView.getChildAt(position - listView.getFirstVisiblePosition());
+        if (row != null && row.getTag() instanceof ViewHolder) {
+            bind((ViewHolder) row.getTag(), position);
+        }
+    }
+
+    private void bind(ViewHolder holder, int position) {
+        MeteoItem item = items.get(position);
+        if (item == null) {
+            holder.city.setText(cities.get(position));
+            holder.description.setText(failed.get(position) ? R.string.error_network : R.string.loading);
+            holder.temperature.setText("");
+            holder.icon.setImageResource(R.drawable.unknown);
+            return;
+        }
+        holder.city.setText(item.getCityName());
+        holder.description.setText(failed.get(position)
+                ? holder.description.getContext().getString(R.string.stale_data, item.getDateTime())
+                : WeatherFormat.capitalizeFirstLetter(item.getWeatherDescription()));
+        holder.temperature.setText(String.format(Locale.getDefault(), "%.1f°C", item.getTemperature()));
+        holder.icon.setImageResource(WeatherFormat.iconFor(item.getWeatherCondition()));
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.weatherappxml;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import java.util.Locale;
+
+/**
+ * Line chart of a {@link ForecastSeries}'s temperature, with pinch to zoom and
+ * drag to pan along the time axis. Each frame downsamples the visible range
+ * with {@link Lttb} to one point per pixel; all buffers and paints are
+ * allocated up front, so drawing, panning and zooming don't allocate.
+ */
+public class ForecastChartView extends View {
+
+    private static final long MIN_SPAN_MS = 3 * 60 * 60 * 1000L;
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final float padding;
+
+    private ForecastSeries series;
+    private long viewStart;
+    private long viewEnd;
+    private double minValue;
+    private double maxValue;
+    // Built once per series, not per frame.
+    private String minLabel = "";
+    private String maxLabel = "";
+
+    // Sized to the view width in onSizeChanged.
+    private int[] sampled = new int[0];
+    private float[] lines = new float[0];
+
+    public ForecastChartView(Context context) {
+        this(context, null);
+    }
+
+    public ForecastChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        padding = 8 * density;
+
+        TypedValue accent = new TypedValue();
+        int lineColor = context.getTheme().resolveAttribute(android.R.attr.colorAccent, accent, true)
+                ? accent.data : Color.BLUE;
+        linePaint.setColor(lineColor);
+        linePaint.setStrokeWidth(2 * density);
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeCap(Paint.Cap.ROUND);
+        gridPaint.setColor(Color.LTGRAY);
+        gridPaint.setStrokeWidth(density);
+        labelPaint.setColor(Color.GRAY);
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 12, getResources().getDisplayMetrics()));
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoom(detector.getFocusX(), detector.getScaleFactor());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                pan(distanceX);
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                resetViewport();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Show a series, zoomed out to its full range.
+     *
+     * @param series The series, or null to clear the chart
+     */
+    public void setSeries(ForecastSeries series) {
+        this.series = series;
+        if (series != null && series.size() > 0) {
+            minValue = Double.POSITIVE_INFINITY;
+            maxValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < series.size(); i++) {
+                minValue = Math.min(minValue, series.getTemperature(i));
+                maxValue = Math.max(maxValue, series.getTemperature(i));
+            }
+            if (maxValue - minValue < 1) {
+                minValue -= 0.5;
+                maxValue += 0.5;
+            }
+            minLabel = String.format(Locale.getDefault(), "%.1f°C", minValue);
+            maxLabel = String.format(Locale.getDefault(), "%.1f°C", maxValue);
+        }
+        resetViewport();
+    }
+
+    private void resetViewport() {
+        if (series != null && series.size() > 0) {
+            viewStart = series.getTimestamp(0);
+            viewEnd = Math.max(series.getTimestamp(series.size() - 1), viewStart + MIN_SPAN_MS);
+        }
+        postInvalidateOnAnimation();
+    }
+
+    private void zoom(float focusX, float scaleFactor) {
+        if (series == null || series.size() < 2) {
+            return;
+        }
+        long span = viewEnd - viewStart;
+        long fullSpan = series.getTimestamp(series.size() - 1) - series.getTimestamp(0);
+        long newSpan = (long) (span / scaleFactor);
+        newSpan = Math.max(MIN_SPAN_MS, Math.min(newSpan, Math.max(fullSpan, MIN_SPAN_MS)));
+        float fraction = (focusX - padding) / Math.max(1f, getWidth() - 2 * padding);
+        long focusTime = viewStart + (long) (fraction * span);
+        viewStart = focusTime - (long) (fraction * newSpan);
+        viewEnd = viewStart + newSpan;
+        clampViewport();
+        postInvalidateOnAnimation();
+    }
+
+    private void pan(float distanceX) {
+        if (series == null || series.size() < 2) {
+            return;
+        }
+        long shift = (long) (distanceX * (viewEnd - viewStart) / Math.max(1f, getWidth() - 2 * padding));
+        viewStart += shift;
+        viewEnd += shift;
+        clampViewport();
+        postInvalidateOnAnimation();
+    }
+
+    private void clampViewport() {
+        long first = series.getTimestamp(0);
+        long last = series.getTimestamp(series.size() - 1);
+        long span = viewEnd - viewStart;
+        if (viewStart < first) {
+            viewStart = first;
+            viewEnd = first + span;
+        }
+        if (viewEnd > last && last - span >= first) {
+            viewEnd = last;
+            viewStart = last - span;
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        int points = Math.max(3, w);
+        sampled = new int[points];
+        lines = new float[4 * points];
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = scaleDetector.onTouchEvent(event);
+        if (!scaleDetector.isInProgress()) {
+            handled |= gestureDetector.onTouchEvent(event);
+        }
+        return handled || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (series == null || series.size() < 2) {
+            return;
+        }
+        float left = padding;
+        float right = getWidth() - padding;
+        float top = padding + labelPaint.getTextSize();
+        float bottom = getHeight() - padding;
+        canvas.drawLine(left, top, right, top, gridPaint);
+        canvas.drawLine(left, bottom, right, bottom, gridPaint);
+        canvas.drawText(maxLabel, left, top - labelPaint.descent(), labelPaint);
+        canvas.drawText(minLabel, left, bottom - labelPaint.descent(), labelPaint);
+
+        // Include one point beyond each edge so the line runs off the sides.
+        int from = Math.max(0, series.lowerBound(viewStart) - 1);
+        int to = Math.min(series.size(), series.lowerBound(viewEnd) + 1);
+        int count = Lttb.downsample(series.timestamps(), series.temperatures(), from, to,
+                Math.min(sampled.length, (int) (right - left)), sampled);
+        if (count < 2) {
+            return;
+        }
+
+        double xScale = (right - left) / (double) (viewEnd - viewStart);
+        double yScale = (bottom - top) / (maxValue - minValue);
+        canvas.save();
+        canvas.clipRect(left, 0, right, getHeight());
+        float prevX = 0;
+        float prevY = 0;
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int index = sampled[i];
+            float x = (float) (left + (series.getTimestamp(index) - viewStart) * xScale);
+            float y = (float) (bottom - (series.getTemperature(index) - minValue) * yScale);
+            if (i > 0) {
+                lines[n++] = prevX;
+                lines[n++] = prevY;
+                lines[n++] = x;
+                lines[n++] = y;
+            }
+            prevX = x;
+            prevY = y;
+        }
+        canvas.drawLines(lines, 0, n, linePaint);
+        canvas.restore();
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.weatherappxml;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+
+import org.json.JSONException;
+
+/**
+ * GET request for the 5-day / 3-hour forecast, decoded into a
+ * {@link ForecastSeries} on Volley's network thread.
+ */
+public class ForecastRequest extends Request<ForecastSeries> {
+
+    private final Response.Listener<ForecastSeries> listener;
+
+    public ForecastRequest(String url, Response.Listener<ForecastSeries> listener,
+                           Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        this.listener = listener;
+        setShouldCache(false);
+    }
+
+    @Override
+    protected Response<ForecastSeries> parseNetworkResponse(NetworkResponse response) {
+        if (response.data == null) {
+            return Response.error(new ParseError(response));
+        }
+        try {
+            return Response.success(MeteoDecoder.decodeForecast(response.data, 0, response.data.length), null);
+        } catch (JSONException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(ForecastSeries response) {
+        listener.onResponse(response);
+    }
+}
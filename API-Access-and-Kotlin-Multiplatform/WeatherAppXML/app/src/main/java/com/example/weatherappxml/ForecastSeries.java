@@ -0,0 +1,133 @@
+package com.example.weatherappxml;
+
+import java.util.Arrays;
+
+/**
+ * A forecast time series stored as parallel primitive columns, one slot per
+ * forecast step, instead of one object per point. Timestamps are ascending.
+ */
+public final class ForecastSeries {
+
+    private final String cityName;
+    private final long cityId;
+    private final long[] timestamps;
+    private final double[] temperatures;
+    private final int[] humidities;
+    private final int size;
+
+    /**
+     * @param timestamps   Milliseconds since the epoch, ascending
+     * @param temperatures Temperature at each timestamp, as reported by the API
+     * @param humidities   Relative humidity in percent at each timestamp
+     * @param size         Number of valid slots in the arrays
+     */
+    public ForecastSeries(String cityName, long cityId, long[] timestamps, double[] temperatures,
+                          int[] humidities, int size) {
+        this.cityName = cityName;
+        this.cityId = cityId;
+        this.timestamps = timestamps;
+        this.temperatures = temperatures;
+        this.humidities = humidities;
+        this.size = size;
+    }
+
+    public String getCityName() {
+        return cityName;
+    }
+
+    public long getCityId() {
+        return cityId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[i];
+    }
+
+    public double getTemperature(int i) {
+        return temperatures[i];
+    }
+
+    public int getHumidity(int i) {
+        return humidities[i];
+    }
+
+    /**
+     * The backing column, for bulk reads such as {@link Lttb}. Only the first
+     * {@link #size()} entries are valid; do not modify.
+     */
+    long[] timestamps() {
+        return timestamps;
+    }
+
+    /**
+     * @see #timestamps()
+     */
+    double[] temperatures() {
+        return temperatures;
+    }
+
+    /**
+     * Index of the first point at or after {@code time}.
+     *
+     * @param time Milliseconds since the epoch
+     * @return An index in {@code [0, size]}
+     */
+    public int lowerBound(long time) {
+        int i = Arrays.binarySearch(timestamps, 0, size, time);
+        if (i < 0) {
+            return -i - 1;
+        }
+        while (i > 0 && timestamps[i - 1] == time) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Grows the columns while decoding a response whose length isn't known upfront.
+     */
+    static final class Builder {
+        private String cityName;
+        private long cityId;
+        private long[] timestamps;
+        private double[] temperatures;
+        private int[] humidities;
+        private int size;
+
+        Builder(int capacity) {
+            ensureCapacity(Math.max(capacity, 8));
+        }
+
+        void ensureCapacity(int capacity) {
+            if (timestamps != null && timestamps.length >= capacity) {
+                return;
+            }
+            timestamps = timestamps == null ? new long[capacity] : Arrays.copyOf(timestamps, capacity);
+            temperatures = temperatures == null ? new double[capacity] : Arrays.copyOf(temperatures, capacity);
+            humidities = humidities == null ? new int[capacity] : Arrays.copyOf(humidities, capacity);
+        }
+
+        void setCity(String name, long id) {
+            cityName = name;
+            cityId = id;
+        }
+
+        void add(long timestamp, double temperature, int humidity) {
+            if (size == timestamps.length) {
+                ensureCapacity(size * 2);
+            }
+            timestamps[size] = timestamp;
+            temperatures[size] = temperature;
+            humidities[size] = humidity;
+            size++;
+        }
+
+        ForecastSeries build() {
+            return new ForecastSeries(cityName, cityId, timestamps, temperatures, humidities, size);
+        }
+    }
+}
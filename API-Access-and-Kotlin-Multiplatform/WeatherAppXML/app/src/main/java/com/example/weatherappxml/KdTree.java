@@ -0,0 +1,168 @@
+package com.example.weatherappxml;
+
+/**
+ * Static 3-d tree for nearest-neighbour lookups on the globe. Each point is
+ * stored as a unit vector, so straight-line distance orders points the same way
+ * as great-circle distance and there is no special case at the poles or the
+ * antimeridian.
+ *
+ * <p>The tree is implicit: points are reordered in place so the median of
+ * every range sits in its middle, and the split axis cycles x, y, z with
+ * depth. There are no node objects, just two primitive arrays.</p>
+ */
+public final class KdTree {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    // x, y, z of each point, in tree order.
+    private final double[] xyz;
+    // Index of each point in the array passed to the constructor, in tree order.
+    private final int[] indices;
+    private final int size;
+
+    /**
+     * @param latLon Interleaved latitude and longitude pairs, in degrees
+     */
+    public KdTree(double[] latLon) {
+        size = latLon.length / 2;
+        xyz = new double[3 * size];
+        indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            toUnitVector(latLon[2 * i], latLon[2 * i + 1], xyz, 3 * i);
+            indices[i] = i;
+        }
+        build(0, size, 0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void build(int lo, int hi, int axis) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi - 1, mid, axis);
+            int next = axis == 2 ? 0 : axis + 1;
+            build(lo, mid, next);
+            lo = mid + 1;
+            axis = next;
+        }
+    }
+
+    // Quickselect: move the k-th smallest point on axis to position k within [lo, hi].
+    private void select(int lo, int hi, int k, int axis) {
+        while (hi > lo) {
+            double pivot = xyz[3 * ((lo + hi) >>> 1) + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (xyz[3 * i + axis] < pivot) {
+                    i++;
+                }
+                while (xyz[3 * j + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        for (int c = 0; c < 3; c++) {
+            double t = xyz[3 * a + c];
+            xyz[3 * a + c] = xyz[3 * b + c];
+            xyz[3 * b + c] = t;
+        }
+        int t = indices[a];
+        indices[a] = indices[b];
+        indices[b] = t;
+    }
+
+    /**
+     * Find the point closest to a location.
+     *
+     * @param latitude  Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return Index of the nearest point in the constructor's array, or -1 if the tree is empty
+     */
+    public int nearest(double latitude, double longitude) {
+        if (size == 0) {
+            return -1;
+        }
+        Search search = new Search();
+        toUnitVector(latitude, longitude, search.query, 0);
+        search.bestDistance = Double.POSITIVE_INFINITY;
+        nearest(search, 0, size, 0);
+        return indices[search.best];
+    }
+
+    private static final class Search {
+        final double[] query = new double[3];
+        double bestDistance;
+        int best;
+    }
+
+    private void nearest(Search search, int lo, int hi, int axis) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double[] q = search.query;
+        double dx = q[0] - xyz[3 * mid];
+        double dy = q[1] - xyz[3 * mid + 1];
+        double dz = q[2] - xyz[3 * mid + 2];
+        double distance = dx * dx + dy * dy + dz * dz;
+        if (distance < search.bestDistance) {
+            search.bestDistance = distance;
+            search.best = mid;
+        }
+
+        double diff = q[axis] - xyz[3 * mid + axis];
+        int next = axis == 2 ? 0 : axis + 1;
+        if (diff < 0) {
+            nearest(search, lo, mid, next);
+            if (diff * diff < search.bestDistance) {
+                nearest(search, mid + 1, hi, next);
+            }
+        } else {
+            nearest(search, mid + 1, hi, next);
+            if (diff * diff < search.bestDistance) {
+                nearest(search, lo, mid, next);
+            }
+        }
+    }
+
+    /**
+     * Great-circle distance between two locations.
+     *
+     * @return Distance in kilometres
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double[] a = new double[6];
+        toUnitVector(lat1, lon1, a, 0);
+        toUnitVector(lat2, lon2, a, 3);
+        double dx = a[0] - a[3];
+        double dy = a[1] - a[4];
+        double dz = a[2] - a[5];
+        double chord = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, chord / 2));
+    }
+
+    private static void toUnitVector(double latitude, double longitude, double[] out, int offset) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        out[offset] = cosLat * Math.cos(lon);
+        out[offset + 1] = cosLat * Math.sin(lon);
+        out[offset + 2] = Math.sin(lat);
+    }
+}
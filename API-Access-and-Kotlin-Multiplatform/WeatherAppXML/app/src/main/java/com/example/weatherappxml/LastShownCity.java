@@ -0,0 +1,51 @@
+package com.example.weatherappxml;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+/**
+ * The city the main screen showed last, as it was requested: by name, or by
+ * id when that was known. The next launch and {@link WeatherRefreshWorker}
+ * reopen this city, whatever other screens have fetched since.
+ */
+public class LastShownCity {
+
+    private static final String PREF_NAME = "last_shown_city";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_ID = "id";
+
+    private final SharedPreferences prefs;
+
+    public LastShownCity(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return City name, or null if no city was shown yet
+     */
+    @Nullable
+    public String getName() {
+        return prefs.getString(KEY_NAME, null);
+    }
+
+    /**
+     * @return OpenWeatherMap city id, or 0 if the city was requested by name
+     */
+    public long getCityId() {
+        return prefs.getLong(KEY_ID, 0);
+    }
+
+    /**
+     * Remember the city on screen.
+     *
+     * @param cityName City name as requested
+     * @param cityId   City id as requested, or 0
+     */
+    public void set(String cityName, long cityId) {
+        if (!cityName.equals(getName()) || cityId != getCityId()) {
+            prefs.edit().putString(KEY_NAME, cityName).putLong(KEY_ID, cityId).apply();
+        }
+    }
+}
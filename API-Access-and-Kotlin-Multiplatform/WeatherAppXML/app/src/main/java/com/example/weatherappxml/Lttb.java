@@ -0,0 +1,96 @@
+package com.example.weatherappxml;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling: picks the points of a series
+ * that best preserve its visual shape when drawn at a given width. Works on
+ * primitive columns and writes indices into a caller-owned buffer, so it can
+ * run on every frame without allocating.
+ */
+public final class Lttb {
+
+    private Lttb() {
+    }
+
+    /**
+     * Downsample {@code [from, to)} of a series to at most {@code threshold} points.
+     *
+     * @param x         X values (e.g. timestamps), ascending
+     * @param y         Y values
+     * @param from      First index, inclusive
+     * @param to        Last index, exclusive
+     * @param threshold Maximum number of points to keep, e.g. the width in pixels
+     * @param out       Receives the kept indices, ascending; needs {@code min(threshold, to - from)} slots
+     * @return Number of indices written to {@code out}
+     */
+    public static int downsample(long[] x, double[] y, int from, int to, int threshold, int[] out) {
+        int n = to - from;
+        if (n <= 0) {
+            return 0;
+        }
+        if (threshold >= n) {
+            for (int i = 0; i < n; i++) {
+                out[i] = from + i;
+            }
+            return n;
+        }
+        if (threshold < 3) {
+            // Too few points for buckets: keep the ends.
+            if (threshold <= 0) {
+                return 0;
+            }
+            out[0] = from;
+            if (threshold == 1) {
+                return 1;
+            }
+            out[1] = to - 1;
+            return 2;
+        }
+
+        // The first and last points are always kept; the rest is split into threshold - 2 buckets.
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        long origin = x[from];
+        int a = from;
+        int count = 0;
+        out[count++] = a;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket (or the last point) is the third triangle vertex.
+            int nextStart = from + (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(from + (int) ((bucket + 2) * bucketSize) + 1, to);
+            double avgX = 0;
+            double avgY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                avgX += x[i] - origin;
+                avgY += y[i];
+            }
+            int nextCount = nextEnd - nextStart;
+            if (nextCount > 0) {
+                avgX /= nextCount;
+                avgY /= nextCount;
+            } else {
+                avgX = x[to - 1] - origin;
+                avgY = y[to - 1];
+            }
+
+            int start = from + (int) (bucket * bucketSize) + 1;
+            int end = from + (int) ((bucket + 1) * bucketSize) + 1;
+            double ax = x[a] - origin;
+            double ay = y[a];
+            double maxArea = -1;
+            int picked = start;
+            for (int i = start; i < end; i++) {
+                // Twice the triangle area; only the comparison matters.
+                double area = Math.abs((ax - avgX) * (y[i] - ay) - (ax - (x[i] - origin)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    picked = i;
+                }
+            }
+            out[count++] = picked;
+            a = picked;
+        }
+
+        out[count++] = to - 1;
+        return count;
+    }
+}
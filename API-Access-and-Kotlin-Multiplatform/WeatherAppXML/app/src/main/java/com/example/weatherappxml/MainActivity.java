@@ -1,37 +1,49 @@
 package com.example.weatherappxml;
 
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.location.Location;
+import android.location.LocationManager;
+import android.net.Uri;
 import android.os.Bundle;
-import android.text.format.DateFormat;
+import android.provider.BaseColumns;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.AutoCompleteTextView;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
+import androidx.core.content.ContextCompat;
+import androidx.cursoradapter.widget.SimpleCursorAdapter;
 
-import com.android.volley.Request;
+import com.android.volley.ParseError;
 import com.android.volley.RequestQueue;
-import com.android.volley.Response;
 import com.android.volley.VolleyError;
-import com.android.volley.toolbox.JsonObjectRequest;
 import com.android.volley.toolbox.Volley;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.Calendar;
+import java.io.IOException;
 import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
     
     private static final String TAG = "MainActivity";
-    private static final String API_KEY = "e457293228d5e1465f30bcbelaea456b"; 
-    private static final String API_URL = "https://api.openweathermap.org/data/2.5/weather";
+    static final String API_KEY = "e457293228d5e1465f30bcbelaea456b"; 
+    static final String API_URL = "https://api.openweathermap.org/data/2.5/weather";
+    static final String FORECAST_URL = "https://api.openweathermap.org/data/2.5/forecast";
+    static final String EXTRA_CITY = "city";
+    private static final String DEFAULT_CITY = "Paris";
     
     private TextView tvCityName;
     private TextView tvDateTime;
@@ -42,7 +54,48 @@ public class MainActivity extends AppCompatActivity {
     private TextView tvWeatherDescriptionValue;
     private android.widget.ProgressBar progressBar;
     
+    private static final Object SEARCH_TAG = new Object();
+    private static final Object FORECAST_TAG = new Object();
+
+    private WeatherFetcher weatherFetcher;
     private RequestQueue requestQueue;
+    private ForecastChartView forecastChart;
+    private boolean forecastMode;
+    private Favourites favourites;
+    private LastShownCity lastShown;
+    private MeteoItem currentItem;
+    private SnapshotStore snapshots;
+
+    private static final String SUGGESTION_LABEL = "label";
+    private static final String SUGGESTION_QUERY = "query";
+    private static final String[] SUGGESTION_COLUMNS = {BaseColumns._ID, SUGGESTION_LABEL, SUGGESTION_QUERY};
+    private static final int MAX_SUGGESTIONS = 8;
+    private CityIndex cityIndex;
+    private boolean cityIndexFailed;
+    private final int[] suggestionRecords = new int[MAX_SUGGESTIONS];
+    private SimpleCursorAdapter suggestionsAdapter;
+    private boolean fetchStarted;
+    private String fallbackCity = DEFAULT_CITY;
+    private long fallbackCityId;
+
+    private final ActivityResultLauncher<String> locationPermissionLauncher = registerForActivityResult(
+            new ActivityResultContracts.RequestPermission(),
+            granted -> {
+                if (!fetchStarted && !isDestroyed()) {
+                    openOnCurrentLocation();
+                }
+            });
+
+    private final ActivityResultLauncher<Intent> favouritesLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(),
+            result -> {
+                if (result.getResultCode() == RESULT_OK && result.getData() != null) {
+                    String city = result.getData().getStringExtra(EXTRA_CITY);
+                    if (city != null) {
+                        fetchWeatherData(city, favourites.getCityId(city));
+                    }
+                }
+            });
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,6 +106,12 @@ public class MainActivity extends AppCompatActivity {
         setSupportActionBar(toolbar);
 
         requestQueue = Volley.newRequestQueue(this);
+        weatherFetcher = new WeatherFetcher(requestQueue, new WeatherCache(this), API_URL, API_KEY);
+        favourites = new Favourites(this);
+        lastShown = new LastShownCity(this);
+        snapshots = SnapshotStore.get(this);
+        weatherFetcher.setSnapshotStore(snapshots);
+        WeatherRefreshWorker.schedule(this);
         
         tvCityName = findViewById(R.id.tvCityName);
         tvDateTime = findViewById(R.id.tvDateTime);
@@ -62,8 +121,64 @@ public class MainActivity extends AppCompatActivity {
         tvHumidityValue = findViewById(R.id.tvHumidityValue);
         tvWeatherDescriptionValue = findViewById(R.id.tvWeatherDescriptionValue);
         progressBar = findViewById(R.id.progressBar);
+        forecastChart = findViewById(R.id.forecastChart);
         
-        fetchWeatherData("Paris");
+        // Show the city that was on screen last time straight away, then open on
+        // the user's location, falling back to refreshing that city.
+        if (lastShown.getName() != null) {
+            fallbackCity = lastShown.getName();
+            fallbackCityId = lastShown.getCityId();
+        }
+        snapshots.latest(WeatherCache.keyFor(fallbackCity, fallbackCityId), snapshot -> {
+            if (fetchStarted || isDestroyed()) {
+                return;
+            }
+            if (snapshot != null) {
+                showSnapshot(snapshot);
+            }
+            if (hasLocationPermission()) {
+                openOnCurrentLocation();
+            } else {
+                locationPermissionLauncher.launch(Manifest.permission.ACCESS_COARSE_LOCATION);
+            }
+        });
+    }
+
+    private boolean hasLocationPermission() {
+        return ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED;
+    }
+
+    /**
+     * Fetch the weather of the bundled city nearest to the last known location,
+     * resolved locally by {@link CityLocator}.
+     */
+    @SuppressLint("MissingPermission")
+    private void openOnCurrentLocation() {
+        Location location = null;
+        if (hasLocationPermission()) {
+            LocationManager locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
+            for (String provider : locationManager.getProviders(true)) {
+                Location candidate = locationManager.getLastKnownLocation(provider);
+                if (candidate != null && (location == null || candidate.getTime() > location.getTime())) {
+                    location = candidate;
+                }
+            }
+        }
+        if (location == null) {
+            fetchWeatherData(fallbackCity, fallbackCityId);
+            return;
+        }
+        CityLocator.findNearest(this, location.getLatitude(), location.getLongitude(), (index, record) -> {
+            if (fetchStarted || isDestroyed()) {
+                return;
+            }
+            if (record < 0) {
+                fetchWeatherData(fallbackCity, fallbackCityId);
+                return;
+            }
+            fetchWeatherData(index.getName(record), index.getCityId(record));
+        });
     }
 
     @Override
@@ -87,86 +202,226 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public boolean onQueryTextChange(String newText) {
+                suggestionsAdapter.changeCursor(suggestCities(newText));
+                return true;
+            }
+        });
+
+        // Type-ahead from the bundled city list; picking one searches "City,CC".
+        suggestionsAdapter = new SimpleCursorAdapter(this, android.R.layout.simple_list_item_1, null,
+                new String[]{SUGGESTION_LABEL}, new int[]{android.R.id.text1}, 0);
+        searchView.setSuggestionsAdapter(suggestionsAdapter);
+        AutoCompleteTextView searchText = searchView.findViewById(androidx.appcompat.R.id.search_src_text);
+        searchText.setThreshold(1);
+        searchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+            @Override
+            public boolean onSuggestionSelect(int position) {
                 return false;
             }
+
+            @Override
+            public boolean onSuggestionClick(int position) {
+                Cursor cursor = suggestionsAdapter.getCursor();
+                if (cursor == null || !cursor.moveToPosition(position)) {
+                    return false;
+                }
+                searchView.setQuery(cursor.getString(cursor.getColumnIndexOrThrow(SUGGESTION_LABEL)), false);
+                fetchWeatherData(cursor.getString(cursor.getColumnIndexOrThrow(SUGGESTION_QUERY)));
+                searchView.clearFocus();
+                return true;
+            }
         });
         
         return true;
     }
+
+    /**
+     * Look up the most populous cities starting with {@code prefix}. The index
+     * is memory-mapped on first use; no network call is made.
+     * 
+     * @param prefix Text typed so far
+     * @return Suggestions, or null if there are none
+     */
+    private Cursor suggestCities(String prefix) {
+        if (cityIndex == null && !cityIndexFailed) {
+            try {
+                cityIndex = CityIndex.get(this);
+            } catch (IOException e) {
+                Log.e(TAG, "City index unavailable", e);
+                cityIndexFailed = true;
+            }
+        }
+        if (cityIndex == null || prefix == null || prefix.trim().isEmpty()) {
+            return null;
+        }
+        int n = cityIndex.search(prefix, suggestionRecords);
+        MatrixCursor cursor = new MatrixCursor(SUGGESTION_COLUMNS, n);
+        for (int i = 0; i < n; i++) {
+            int record = suggestionRecords[i];
+            String name = cityIndex.getName(record);
+            String country = cityIndex.getCountry(record);
+            cursor.addRow(new Object[]{record, name + ", " + country, name + "," + country});
+        }
+        return cursor;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_forecast) {
+            forecastMode = !forecastMode;
+            item.setChecked(forecastMode);
+            forecastChart.setVisibility(forecastMode ? View.VISIBLE : View.GONE);
+            if (forecastMode && currentItem != null) {
+                fetchForecast(currentItem.getCityName(), currentItem.getCityId());
+            } else {
+                requestQueue.cancelAll(FORECAST_TAG);
+            }
+            return true;
+        }
+        if (id == R.id.action_favourites) {
+            favouritesLauncher.launch(new Intent(this, FavouritesActivity.class));
+            return true;
+        }
+        if (id == R.id.action_add_favourite) {
+            if (currentItem != null && favourites.add(currentItem.getCityName())) {
+                favourites.setCityId(currentItem.getCityName(), currentItem.getCityId());
+                Toast.makeText(this, getString(R.string.favourite_added, currentItem.getCityName()), Toast.LENGTH_SHORT).show();
+            }
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
     
+    @Override
+    protected void onDestroy() {
+        weatherFetcher.cancel(SEARCH_TAG);
+        requestQueue.cancelAll(FORECAST_TAG);
+        super.onDestroy();
+    }
+
     /**
-     * Fetch weather data for a given city using Volley.
+     * Fetch weather data for a given city. A fresh cached response is shown
+     * without any request; a stale one is shown immediately while a conditional
+     * request refreshes it in the background. Repeated searches for the same
+     * city share one request, and a new search drops the previous one, so only
+     * the latest query ever reaches {@link #updateUI}.
      * 
      * @param cityName Name of the city to fetch weather data for
      */
     private void fetchWeatherData(String cityName) {
-        String url = API_URL + "?q=" + cityName + "&appid=" + API_KEY + "&units=metric";
-        
-        Log.d(TAG, "Fetching weather data for: " + cityName + " from URL: " + url);
+        fetchWeatherData(cityName, 0);
+    }
+
+    /**
+     * Fetch weather data for a city, by id when it is known.
+     * 
+     * @param cityName Name of the city, which keys the cache unless the id is known
+     * @param cityId   OpenWeatherMap city id, or 0 to search by name
+     */
+    private void fetchWeatherData(String cityName, long cityId) {
+        Log.d(TAG, "Fetching weather data for: " + cityName);
+        fetchStarted = true;
         progressBar.setVisibility(TextView.VISIBLE);
 
-        JsonObjectRequest request = new JsonObjectRequest(Request.Method.GET, url, null,
-                response -> {
-                    Log.d(TAG, "Response: " + response.toString());
+        weatherFetcher.fetch(cityName, cityId, SEARCH_TAG, new WeatherFetcher.Listener() {
+            @Override
+            public void onWeather(MeteoItem item, long fetchedAt, boolean stale) {
+                if (!stale) {
                     progressBar.setVisibility(TextView.GONE);
-                    try {
-                        parseWeatherData(response);
-                    } catch (JSONException e) {
-                        Log.e(TAG, "JSON parsing error", e);
-                        Toast.makeText(MainActivity.this, getString(R.string.error_parsing), Toast.LENGTH_LONG).show();
-                    }
-                },
+                }
+                lastShown.set(cityName, cityId);
+                showWeatherData(item, fetchedAt);
+            }
+
+            @Override
+            public void onError(VolleyError error, boolean hadCachedCopy) {
+                Log.e(TAG, "Volley error: ", error);
+                progressBar.setVisibility(TextView.GONE);
+                if (hadCachedCopy) {
+                    // Keep showing the stale data rather than an error.
+                    return;
+                }
+                if (error instanceof ParseError) {
+                    Toast.makeText(MainActivity.this, getString(R.string.error_parsing), Toast.LENGTH_LONG).show();
+                } else if (error.networkResponse != null && error.networkResponse.statusCode == 404) {
+                    Toast.makeText(MainActivity.this, getString(R.string.error_city_not_found), Toast.LENGTH_LONG).show();
+                } else {
+                    showOfflineSnapshot(cityName, cityId);
+                }
+            }
+        });
+    }
+    
+    /**
+     * Convert a decoded response for display and update the UI.
+     * 
+     * @param decoded   Response as decoded by {@link MeteoDecoder}; not modified
+     * @param fetchedAt When it was fetched, in milliseconds since the epoch
+     */
+    private void showWeatherData(MeteoItem decoded, long fetchedAt) {
+        boolean cityChanged = currentItem == null || currentItem.getCityId() != decoded.getCityId();
+        currentItem = decoded;
+        if (forecastMode && cityChanged) {
+            fetchForecast(decoded.getCityName(), decoded.getCityId());
+        }
+        if (favourites.contains(decoded.getCityName())) {
+            favourites.setCityId(decoded.getCityName(), decoded.getCityId());
+        }
+        updateUI(WeatherFormat.forDisplay(decoded, fetchedAt));
+    }
+    
+    /**
+     * Fetch the 5-day / 3-hour forecast and show it in the chart. A newer
+     * request replaces any forecast still loading.
+     * 
+     * @param cityName Name of the city
+     * @param cityId   OpenWeatherMap city id, or 0 to search by name
+     */
+    private void fetchForecast(String cityName, long cityId) {
+        requestQueue.cancelAll(FORECAST_TAG);
+        String query = cityId != 0 ? "?id=" + cityId : "?q=" + Uri.encode(cityName);
+        ForecastRequest request = new ForecastRequest(FORECAST_URL + query + "&appid=" + API_KEY + "&units=metric",
+                series -> forecastChart.setSeries(series),
                 error -> {
-                    Log.e(TAG, "Volley error: ", error);
-                    progressBar.setVisibility(TextView.GONE);
-                    if (error.networkResponse != null && error.networkResponse.statusCode == 404) {
-                        Toast.makeText(MainActivity.this, getString(R.string.error_city_not_found), Toast.LENGTH_LONG).show();
-                    } else {
-                        Toast.makeText(MainActivity.this, getString(R.string.error_network), Toast.LENGTH_LONG).show();
-                    }
+                    Log.e(TAG, "Forecast error: ", error);
+                    forecastChart.setSeries(null);
                 });
-        
+        request.setTag(FORECAST_TAG);
         requestQueue.add(request);
     }
-    
+
     /**
-     * Parse the JSON response and update the UI.
+     * Show a stored snapshot, dated when it was fetched.
      * 
-     * @param response JSONObject response from the API
-     * @throws JSONException if JSON parsing fails
+     * @param snapshot Snapshot from {@link SnapshotStore}
      */
-    private void parseWeatherData(JSONObject response) throws JSONException {
-        String cityName = response.getString("name");
-        
-        JSONObject mainData = response.getJSONObject("main");
-        double tempKelvin = mainData.getDouble("temp");
-        double feelsLikeKelvin = mainData.getDouble("feels_like");
-        int humidity = mainData.getInt("humidity");
-        
-        JSONArray weatherArray = response.getJSONArray("weather");
-        JSONObject weatherObject = weatherArray.getJSONObject(0);
-        String weatherCondition = weatherObject.getString("main");
-        String weatherDescription = weatherObject.getString("description");
-        
-        double tempCelsius = tempKelvin - 273.15;
-        double feelsLikeCelsius = feelsLikeKelvin - 273.15;
-        
-        Calendar calendar = Calendar.getInstance();
-        String dateTime = DateFormat.format("yyyy-MM-dd HH:mm", calendar).toString();
-        
-        MeteoItem meteoItem = new MeteoItem(
-                cityName,
-                tempCelsius,
-                feelsLikeCelsius,
-                humidity,
-                weatherCondition,
-                weatherDescription,
-                dateTime
-        );
-        
-        updateUI(meteoItem);
+    private void showSnapshot(SnapshotStore.Snapshot snapshot) {
+        currentItem = snapshot.item;
+        updateUI(WeatherFormat.forDisplay(snapshot.item, snapshot.fetchedAt));
     }
-    
+
+    /**
+     * After a network failure, fall back to the last snapshot of the city, if any.
+     * 
+     * @param cityName Name of the city that could not be fetched
+     * @param cityId   Its id, or 0 if it was searched by name
+     */
+    private void showOfflineSnapshot(String cityName, long cityId) {
+        snapshots.latest(WeatherCache.keyFor(cityName, cityId), snapshot -> {
+            if (isDestroyed()) {
+                return;
+            }
+            if (snapshot == null) {
+                Toast.makeText(this, getString(R.string.error_network), Toast.LENGTH_LONG).show();
+                return;
+            }
+            lastShown.set(cityName, cityId);
+            showSnapshot(snapshot);
+            Toast.makeText(this, getString(R.string.offline_snapshot), Toast.LENGTH_LONG).show();
+        });
+    }
+
     /**
      * Update the UI with weather data.
      * 
@@ -178,59 +433,8 @@ public class MainActivity extends AppCompatActivity {
         tvTemperatureValue.setText(String.format(Locale.getDefault(), "%.1f°C", meteoItem.getTemperature()));
         tvFeelsLikeValue.setText(String.format(Locale.getDefault(), "%.1f°C", meteoItem.getFeelsLike()));
         tvHumidityValue.setText(String.format(Locale.getDefault(), "%d%%", meteoItem.getHumidity()));
-        tvWeatherDescriptionValue.setText(capitalizeFirstLetter(meteoItem.getWeatherDescription()));
+        tvWeatherDescriptionValue.setText(WeatherFormat.capitalizeFirstLetter(meteoItem.getWeatherDescription()));
         
-        setWeatherIcon(meteoItem.getWeatherCondition());
-    }
-    
-    /**
-     * Set the weather icon based on the weather condition.
-     * 
-     * @param weatherCondition Weather condition string from API
-     */
-    private void setWeatherIcon(String weatherCondition) {
-        if (weatherCondition == null) {
-            ivWeatherIcon.setImageResource(R.drawable.unknown);
-            return;
-        }
-        switch (weatherCondition.toLowerCase(Locale.ROOT)) {
-            case "clear":
-                ivWeatherIcon.setImageResource(R.drawable.clear);
-                break;
-            case "clouds":
-                ivWeatherIcon.setImageResource(R.drawable.cloudy);
-                break;
-            case "rain":
-            case "drizzle":
-                ivWeatherIcon.setImageResource(R.drawable.rainy);
-                break;
-            case "thunderstorm":
-                ivWeatherIcon.setImageResource(R.drawable.thunderstorm);
-                break;
-            case "snow":
-                ivWeatherIcon.setImageResource(R.drawable.snowy);
-                break;
-            case "mist":
-            case "fog":
-            case "haze":
-                ivWeatherIcon.setImageResource(R.drawable.foggy);
-                break;
-            default:
-                ivWeatherIcon.setImageResource(R.drawable.unknown);
-                break;
-        }
-    }
-
-    /**
-     * Helper method to capitalize the first letter of a string.
-     * 
-     * @param original The original string.
-     * @return The string with the first letter capitalized.
-     */
-    private String capitalizeFirstLetter(String original) {
-        if (original == null || original.isEmpty()) {
-            return original;
-        }
-        return original.substring(0, 1).toUpperCase(Locale.ROOT) + original.substring(1);
+        ivWeatherIcon.setImageResource(WeatherFormat.iconFor(meteoItem.getWeatherCondition()));
     }
 }
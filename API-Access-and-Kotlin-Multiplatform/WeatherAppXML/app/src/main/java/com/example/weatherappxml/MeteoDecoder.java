@@ -0,0 +1,535 @@
+package com.example.weatherappxml;
+
+import org.json.JSONException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass decoder from an OpenWeatherMap "current weather" response (or a
+ * "group" response listing several) to {@link MeteoItem}s, and from a
+ * "forecast" response to a {@link ForecastSeries}. It walks the UTF-8 bytes directly, matches field names
+ * against byte constants and skips everything it doesn't need, so no JSON tree
+ * is built and only the kept strings are allocated.
+ *
+ * <p>Values are stored as the API reports them; the date is left unset.</p>
+ */
+public final class MeteoDecoder {
+
+    private static final byte[] ID = ascii("id");
+    private static final byte[] CNT = ascii("cnt");
+    private static final byte[] DT = ascii("dt");
+    private static final byte[] CITY = ascii("city");
+    private static final byte[] LIST = ascii("list");
+    private static final byte[] NAME = ascii("name");
+    private static final byte[] MAIN = ascii("main");
+    private static final byte[] WEATHER = ascii("weather");
+    private static final byte[] TEMP = ascii("temp");
+    private static final byte[] FEELS_LIKE = ascii("feels_like");
+    private static final byte[] HUMIDITY = ascii("humidity");
+    private static final byte[] DESCRIPTION = ascii("description");
+
+    /**
+     * Receives the items of a group response as they are decoded.
+     */
+    public interface ItemListener {
+        /**
+         * @param item  The decoded item
+         * @param start Offset of the item's JSON object in the input
+         * @param end   Offset just past the item's JSON object
+         */
+        void onItem(MeteoItem item, int start, int end);
+    }
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+    // Bounds of the last name read by readName().
+    private int nameStart;
+    private int nameEnd;
+
+    private MeteoDecoder(byte[] data, int offset, int length) {
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    public static MeteoItem decode(String json) throws JSONException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return decode(bytes, 0, bytes.length);
+    }
+
+    public static MeteoItem decode(byte[] data) throws JSONException {
+        return decode(data, 0, data.length);
+    }
+
+    /**
+     * Decode a response held in {@code data[offset, offset + length)}.
+     *
+     * @return The decoded item
+     * @throws JSONException if the input is not valid JSON or lacks the expected objects
+     */
+    public static MeteoItem decode(byte[] data, int offset, int length) throws JSONException {
+        return new MeteoDecoder(data, offset, length).readRoot();
+    }
+
+    /**
+     * Decode a group response ({@code {"cnt": n, "list": [...]}}) held in
+     * {@code data[offset, offset + length)}, one item at a time.
+     *
+     * @param listener Called for each entry of {@code list}, in order
+     * @throws JSONException if the input is not valid JSON or an entry is incomplete
+     */
+    public static void decodeGroup(byte[] data, int offset, int length, ItemListener listener)
+            throws JSONException {
+        new MeteoDecoder(data, offset, length).readGroup(listener);
+    }
+
+    private void readGroup(ItemListener listener) throws JSONException {
+        expect('{');
+        if (consumeIf('}')) {
+            return;
+        }
+        do {
+            readName();
+            if (!nameIs(LIST)) {
+                skipValue();
+                continue;
+            }
+            expect('[');
+            if (consumeIf(']')) {
+                continue;
+            }
+            do {
+                skipWhitespace();
+                int start = pos;
+                MeteoItem item = readRoot();
+                listener.onItem(item, start, pos);
+            } while (consumeIf(','));
+            expect(']');
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    /**
+     * Decode a 5-day forecast response held in {@code data[offset, offset + length)}.
+     * Only the time, temperature and humidity of each step are kept.
+     *
+     * @return The series, in the response's (chronological) order
+     * @throws JSONException if the input is not valid JSON or a step is incomplete
+     */
+    public static ForecastSeries decodeForecast(byte[] data, int offset, int length) throws JSONException {
+        return new MeteoDecoder(data, offset, length).readForecast();
+    }
+
+    private ForecastSeries readForecast() throws JSONException {
+        ForecastSeries.Builder series = new ForecastSeries.Builder(40);
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                readName();
+                if (nameIs(CNT)) {
+                    series.ensureCapacity((int) readDouble());
+                } else if (nameIs(LIST)) {
+                    readForecastList(series);
+                } else if (nameIs(CITY)) {
+                    readCity(series);
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        return series.build();
+    }
+
+    private void readForecastList(ForecastSeries.Builder series) throws JSONException {
+        expect('[');
+        if (consumeIf(']')) {
+            return;
+        }
+        do {
+            long time = -1;
+            double temperature = Double.NaN;
+            int humidity = 0;
+            expect('{');
+            if (!consumeIf('}')) {
+                do {
+                    readName();
+                    if (nameIs(DT)) {
+                        time = (long) readDouble() * 1000L;
+                    } else if (nameIs(MAIN)) {
+                        expect('{');
+                        if (!consumeIf('}')) {
+                            do {
+                                readName();
+                                if (nameIs(TEMP)) {
+                                    temperature = readDouble();
+                                } else if (nameIs(HUMIDITY)) {
+                                    humidity = (int) readDouble();
+                                } else {
+                                    skipValue();
+                                }
+                            } while (consumeIf(','));
+                            expect('}');
+                        }
+                    } else {
+                        skipValue();
+                    }
+                } while (consumeIf(','));
+                expect('}');
+            }
+            if (time < 0 || Double.isNaN(temperature)) {
+                throw syntaxError("Incomplete forecast step");
+            }
+            series.add(time, temperature, humidity);
+        } while (consumeIf(','));
+        expect(']');
+    }
+
+    private void readCity(ForecastSeries.Builder series) throws JSONException {
+        String name = null;
+        long id = 0;
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                readName();
+                if (nameIs(NAME)) {
+                    name = readString();
+                } else if (nameIs(ID)) {
+                    id = (long) readDouble();
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        series.setCity(name, id);
+    }
+
+    private MeteoItem readRoot() throws JSONException {
+        MeteoItem item = new MeteoItem();
+        boolean sawMain = false;
+        boolean sawWeather = false;
+
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                readName();
+                if (nameIs(NAME)) {
+                    item.setCityName(readString());
+                } else if (nameIs(ID)) {
+                    item.setCityId((long) readDouble());
+                } else if (nameIs(MAIN)) {
+                    readMain(item);
+                    sawMain = true;
+                } else if (nameIs(WEATHER)) {
+                    readWeather(item);
+                    sawWeather = true;
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+
+        if (!sawMain || !sawWeather) {
+            throw new JSONException("Missing " + (sawMain ? "weather" : "main"));
+        }
+        return item;
+    }
+
+    private void readMain(MeteoItem item) throws JSONException {
+        expect('{');
+        if (consumeIf('}')) {
+            return;
+        }
+        do {
+            readName();
+            if (nameIs(TEMP)) {
+                item.setTemperature(readDouble());
+            } else if (nameIs(FEELS_LIKE)) {
+                item.setFeelsLike(readDouble());
+            } else if (nameIs(HUMIDITY)) {
+                item.setHumidity((int) readDouble());
+            } else {
+                skipValue();
+            }
+        } while (consumeIf(','));
+        expect('}');
+    }
+
+    private void readWeather(MeteoItem item) throws JSONException {
+        expect('[');
+        if (consumeIf(']')) {
+            throw new JSONException("Empty weather array");
+        }
+        // Only the first condition is shown.
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                readName();
+                if (nameIs(MAIN)) {
+                    item.setWeatherCondition(readString());
+                } else if (nameIs(DESCRIPTION)) {
+                    item.setWeatherDescription(readString());
+                } else {
+                    skipValue();
+                }
+            } while (consumeIf(','));
+            expect('}');
+        }
+        while (consumeIf(',')) {
+            skipValue();
+        }
+        expect(']');
+    }
+
+    // --- lexing ---
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte c = data[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean consumeIf(char c) {
+        skipWhitespace();
+        if (pos < end && data[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) throws JSONException {
+        if (!consumeIf(c)) {
+            throw syntaxError("Expected '" + c + "'");
+        }
+    }
+
+    private void readName() throws JSONException {
+        skipWhitespace();
+        if (pos >= end || data[pos] != '"') {
+            throw syntaxError("Expected name");
+        }
+        nameStart = pos + 1;
+        skipString();
+        nameEnd = pos - 1;
+        expect(':');
+    }
+
+    private boolean nameIs(byte[] literal) {
+        int length = nameEnd - nameStart;
+        if (length != literal.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (data[nameStart + i] != literal[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readString() throws JSONException {
+        skipWhitespace();
+        if (pos < end && data[pos] == 'n') {
+            skipLiteral();
+            return null;
+        }
+        if (pos >= end || data[pos] != '"') {
+            throw syntaxError("Expected string");
+        }
+        int start = ++pos;
+        while (pos < end) {
+            byte c = data[pos];
+            if (c == '"') {
+                return new String(data, start, pos++ - start, StandardCharsets.UTF_8);
+            }
+            if (c == '\\') {
+                return readEscapedString(start);
+            }
+            pos++;
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private String readEscapedString(int start) throws JSONException {
+        StringBuilder out = new StringBuilder();
+        int segment = start;
+        while (pos < end) {
+            byte c = data[pos];
+            if (c == '"') {
+                out.append(new String(data, segment, pos - segment, StandardCharsets.UTF_8));
+                pos++;
+                return out.toString();
+            }
+            if (c != '\\') {
+                pos++;
+                continue;
+            }
+            out.append(new String(data, segment, pos - segment, StandardCharsets.UTF_8));
+            if (pos + 1 >= end) {
+                break;
+            }
+            byte escaped = data[pos + 1];
+            pos += 2;
+            switch (escaped) {
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'n': out.append('\n'); break;
+                case 'r': out.append('\r'); break;
+                case 't': out.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > end) {
+                        throw syntaxError("Bad unicode escape");
+                    }
+                    out.append((char) Integer.parseInt(new String(data, pos, 4, StandardCharsets.US_ASCII), 16));
+                    pos += 4;
+                    break;
+                default: out.append((char) escaped); break;
+            }
+            segment = pos;
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private void skipString() throws JSONException {
+        pos++; // opening quote
+        while (pos < end) {
+            byte c = data[pos++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                pos++;
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+    private double readDouble() throws JSONException {
+        skipWhitespace();
+        int start = pos;
+        boolean negative = consumeByte('-');
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+
+        while (pos < end && isDigit(data[pos])) {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (data[pos] - '0');
+                digits++;
+            } else {
+                scale++;
+            }
+            pos++;
+        }
+        if (consumeByte('.')) {
+            while (pos < end && isDigit(data[pos])) {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (data[pos] - '0');
+                    digits++;
+                    scale--;
+                }
+                pos++;
+            }
+        }
+        if (pos < end && (data[pos] == 'e' || data[pos] == 'E')) {
+            // Rare in weather payloads; let the JDK handle exponents exactly.
+            pos++;
+            while (pos < end && (isDigit(data[pos]) || data[pos] == '+' || data[pos] == '-')) {
+                pos++;
+            }
+            return Double.parseDouble(new String(data, start, pos - start, StandardCharsets.US_ASCII));
+        }
+        if (digits == 0) {
+            throw syntaxError("Expected number");
+        }
+
+        double value = mantissa;
+        if (scale < 0) {
+            value /= pow10(-scale);
+        } else if (scale > 0) {
+            value *= pow10(scale);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double pow10(int n) {
+        double result = 1;
+        for (int i = 0; i < n; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    private boolean consumeByte(char c) {
+        if (pos < end && data[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void skipValue() throws JSONException {
+        skipWhitespace();
+        if (pos >= end) {
+            throw syntaxError("Expected value");
+        }
+        switch (data[pos]) {
+            case '{':
+                pos++;
+                if (!consumeIf('}')) {
+                    do {
+                        readName();
+                        skipValue();
+                    } while (consumeIf(','));
+                    expect('}');
+                }
+                break;
+            case '[':
+                pos++;
+                if (!consumeIf(']')) {
+                    do {
+                        skipValue();
+                    } while (consumeIf(','));
+                    expect(']');
+                }
+                break;
+            case '"':
+                skipString();
+                break;
+            default:
+                skipLiteral();
+                break;
+        }
+    }
+
+    // Numbers, true, false and null: everything up to the next delimiter.
+    private void skipLiteral() {
+        while (pos < end) {
+            byte c = data[pos];
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at offset " + pos);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
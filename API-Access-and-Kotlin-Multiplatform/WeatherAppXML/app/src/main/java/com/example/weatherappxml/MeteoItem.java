@@ -8,6 +8,7 @@ public class MeteoItem {
     private String weatherCondition;
     private String weatherDescription;
     private String dateTime;
+    private long cityId;
 
     public MeteoItem() {
     }
@@ -78,4 +79,12 @@ public class MeteoItem {
     public void setDateTime(String dateTime) {
         this.dateTime = dateTime;
     }
+
+    public long getCityId() {
+        return cityId;
+    }
+
+    public void setCityId(long cityId) {
+        this.cityId = cityId;
+    }
 }
@@ -0,0 +1,253 @@
+package com.example.weatherappxml;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local history of every decoded weather response, so the last known weather
+ * can be shown at startup and while offline. Rows are indexed by city and
+ * time. Retention keeps at most {@link #MAX_ROWS_PER_CITY} rows per city and
+ * drops rows older than {@link #RETENTION_MS}, except each city's latest.
+ *
+ * <p>All database work runs on one background thread; callbacks are posted to
+ * the main thread.</p>
+ */
+public class SnapshotStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "SnapshotStore";
+    private static final String DB_NAME = "weather_snapshots.db";
+    private static final int DB_VERSION = 1;
+    private static final String TABLE = "snapshots";
+
+    public static final int MAX_ROWS_PER_CITY = 48;
+    public static final long RETENTION_MS = 7 * 24 * 60 * 60 * 1000L;
+    /** Run compaction after this many inserts. */
+    private static final int COMPACT_EVERY = 64;
+
+    private static final String COLUMNS = "city_key, city_name, city_id, temp, feels_like, humidity, "
+            + "weather_condition, weather_description, fetched_at";
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE + " (" + COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * A stored item and when it was fetched.
+     */
+    public static class Snapshot {
+        public final MeteoItem item;
+        public final long fetchedAt;
+
+        Snapshot(MeteoItem item, long fetchedAt) {
+            this.item = item;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private static SnapshotStore instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Only touched on the executor thread.
+    private SQLiteStatement insertStatement;
+    private int insertsSinceCompaction;
+
+    /**
+     * @param context Any context
+     * @return The process-wide store, so every screen shares one connection and writer thread
+     */
+    public static synchronized SnapshotStore get(Context context) {
+        if (instance == null) {
+            instance = new SnapshotStore(context);
+        }
+        return instance;
+    }
+
+    private SnapshotStore(Context context) {
+        super(context.getApplicationContext(), DB_NAME, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
+        executor.execute(this::compactNow);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Only takes effect when the file is created; lets compaction give pages back.
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "city_key TEXT NOT NULL, "
+                + "city_name TEXT, "
+                + "city_id INTEGER NOT NULL DEFAULT 0, "
+                + "temp REAL, "
+                + "feels_like REAL, "
+                + "humidity INTEGER, "
+                + "weather_condition TEXT, "
+                + "weather_description TEXT, "
+                + "fetched_at INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX snapshots_city_time ON " + TABLE + " (city_key, fetched_at)");
+        db.execSQL("CREATE INDEX snapshots_time ON " + TABLE + " (fetched_at)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only a cache of past responses: start over.
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        onCreate(db);
+    }
+
+    /**
+     * Record a decoded response in the background.
+     *
+     * @param cityKey   City key (see {@link WeatherCache#keyFor})
+     * @param item      Decoded response
+     * @param fetchedAt When it was fetched, in milliseconds since the epoch
+     */
+    public void save(String cityKey, MeteoItem item, long fetchedAt) {
+        executor.execute(() -> {
+            try {
+                if (insertStatement == null) {
+                    insertStatement = getWritableDatabase().compileStatement(INSERT_SQL);
+                }
+                SQLiteStatement statement = insertStatement;
+                statement.clearBindings();
+                statement.bindString(1, cityKey);
+                bindNullable(statement, 2, item.getCityName());
+                statement.bindLong(3, item.getCityId());
+                statement.bindDouble(4, item.getTemperature());
+                statement.bindDouble(5, item.getFeelsLike());
+                statement.bindLong(6, item.getHumidity());
+                bindNullable(statement, 7, item.getWeatherCondition());
+                bindNullable(statement, 8, item.getWeatherDescription());
+                statement.bindLong(9, fetchedAt);
+                statement.executeInsert();
+                if (++insertsSinceCompaction >= COMPACT_EVERY) {
+                    compactNow();
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Could not save snapshot for " + cityKey, e);
+            }
+        });
+    }
+
+    /**
+     * Block until every save queued so far has been written. Must not be
+     * called on the main thread.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void sync() throws InterruptedException {
+        try {
+            executor.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Sync failed", e);
+        }
+    }
+
+    /**
+     * Load the latest snapshot of a city.
+     *
+     * @param cityKey  City key (see {@link WeatherCache#keyFor})
+     * @param callback Receives the snapshot, or null if there is none
+     */
+    public void latest(String cityKey, Callback<Snapshot> callback) {
+        query("SELECT " + COLUMNS + " FROM " + TABLE + " WHERE city_key = ? "
+                + "ORDER BY fetched_at DESC LIMIT 1", new String[]{cityKey}, callback);
+    }
+
+    private void query(String sql, String[] args, Callback<Snapshot> callback) {
+        executor.execute(() -> {
+            Snapshot snapshot = null;
+            try (Cursor cursor = getReadableDatabase().rawQuery(sql, args)) {
+                if (cursor.moveToFirst()) {
+                    snapshot = read(cursor);
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Could not load snapshot", e);
+            }
+            Snapshot result = snapshot;
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    private static Snapshot read(Cursor cursor) {
+        MeteoItem item = new MeteoItem();
+        item.setCityName(cursor.getString(1));
+        item.setCityId(cursor.getLong(2));
+        item.setTemperature(cursor.getDouble(3));
+        item.setFeelsLike(cursor.getDouble(4));
+        item.setHumidity(cursor.getInt(5));
+        item.setWeatherCondition(cursor.getString(6));
+        item.setWeatherDescription(cursor.getString(7));
+        return new Snapshot(item, cursor.getLong(8));
+    }
+
+    /**
+     * Apply the retention policy in the background.
+     */
+    public void compact() {
+        executor.execute(this::compactNow);
+    }
+
+    private void compactNow() {
+        insertsSinceCompaction = 0;
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            int deleted = 0;
+            db.beginTransaction();
+            try {
+                // Expired rows, keeping each city's latest so it can still be shown offline.
+                deleted += db.delete(TABLE, "fetched_at < ? AND id NOT IN "
+                                + "(SELECT MAX(id) FROM " + TABLE + " GROUP BY city_key)",
+                        new String[]{String.valueOf(System.currentTimeMillis() - RETENTION_MS)});
+
+                // Per-city cap: drop rows older than the city's MAX_ROWS_PER_CITY-th newest.
+                ArrayList<String> overfull = new ArrayList<>();
+                try (Cursor cursor = db.rawQuery("SELECT city_key FROM " + TABLE
+                        + " GROUP BY city_key HAVING COUNT(*) > " + MAX_ROWS_PER_CITY, null)) {
+                    while (cursor.moveToNext()) {
+                        overfull.add(cursor.getString(0));
+                    }
+                }
+                for (String cityKey : overfull) {
+                    deleted += db.delete(TABLE, "city_key = ? AND fetched_at < (SELECT fetched_at FROM "
+                                    + TABLE + " WHERE city_key = ? ORDER BY fetched_at DESC LIMIT 1 OFFSET ?)",
+                            new String[]{cityKey, cityKey, String.valueOf(MAX_ROWS_PER_CITY - 1)});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (deleted > 0) {
+                Log.d(TAG, "Compaction removed " + deleted + " snapshots");
+                db.execSQL("PRAGMA incremental_vacuum");
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Compaction failed", e);
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
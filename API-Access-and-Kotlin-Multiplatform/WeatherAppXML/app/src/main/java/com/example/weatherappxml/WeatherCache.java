@@ -0,0 +1,236 @@
+package com.example.weatherappxml;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Two-tier (memory + disk) cache of raw weather responses, keyed by city id or
+ * normalised name (see {@link #keyFor}). Entries younger than the TTL are
+ * served without touching the network; older entries can still be shown while
+ * a refresh runs, up to the stale window. The server's ETag / Last-Modified are kept so refreshes can be
+ * conditional.
+ */
+public class WeatherCache {
+
+    private static final String TAG = "WeatherCache";
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000L;
+    public static final long DEFAULT_MAX_STALE_MS = 24 * 60 * 60 * 1000L;
+    private static final int MEMORY_ENTRIES = 32;
+
+    /**
+     * A cached response body and the metadata needed to revalidate it.
+     */
+    public static class Entry {
+        public final String body;
+        public final long fetchedAt;
+        public final String etag;
+        public final String lastModified;
+
+        public Entry(String body, long fetchedAt, String etag, String lastModified) {
+            this.body = body;
+            this.fetchedAt = fetchedAt;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final File dir;
+    private final long ttlMs;
+    private final long maxStaleMs;
+    private final LruCache<String, Entry> memory = new LruCache<>(MEMORY_ENTRIES);
+    // Reads and writes share one thread, so a read always sees earlier writes.
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public WeatherCache(Context context) {
+        this(context, DEFAULT_TTL_MS, DEFAULT_MAX_STALE_MS);
+    }
+
+    public WeatherCache(Context context, long ttlMs, long maxStaleMs) {
+        this.dir = new File(context.getCacheDir(), "weather");
+        this.ttlMs = ttlMs;
+        this.maxStaleMs = maxStaleMs;
+        diskExecutor.execute(dir::mkdirs);
+    }
+
+    /**
+     * Normalise a city name so "Paris", " paris " and "PARÍS" share one entry.
+     *
+     * @param cityName City name as typed by the user
+     * @return Lower-case name without accents or repeated spaces
+     */
+    public static String normalize(String cityName) {
+        String trimmed = cityName.trim().replaceAll("\\s+", " ");
+        String decomposed = Normalizer.normalize(trimmed, Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Key a city's entry by its id when that is known, so every name that
+     * resolves to the city shares one entry, and by its normalised name otherwise.
+     *
+     * @param cityName City name
+     * @param cityId   OpenWeatherMap city id, or 0 if unknown
+     * @return Cache and snapshot key
+     */
+    public static String keyFor(String cityName, long cityId) {
+        return cityId != 0 ? "id:" + cityId : normalize(cityName);
+    }
+
+    /**
+     * Receives the result of {@link #get(String, Callback)} on the main thread.
+     */
+    public interface Callback {
+        /**
+         * @param entry The entry, or null if missing or older than the stale window
+         */
+        void onEntry(Entry entry);
+    }
+
+    /**
+     * Look up a city in memory only. Never touches the disk, so it is safe on the
+     * main thread.
+     *
+     * @param key Normalised city name
+     * @return The entry, or null if not in memory or older than the stale window
+     */
+    public Entry peek(String key) {
+        Entry entry = memory.get(key);
+        return entry != null && age(entry) <= maxStaleMs ? entry : null;
+    }
+
+    /**
+     * Look up a city, first in memory, then on disk on the cache's own thread.
+     * A memory hit is delivered before this returns; a disk lookup later, on the
+     * main thread.
+     *
+     * @param key      Normalised city name
+     * @param callback Receives the entry, or null
+     */
+    public void get(String key, Callback callback) {
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            callback.onEntry(age(entry) <= maxStaleMs ? entry : null);
+            return;
+        }
+        diskExecutor.execute(() -> {
+            Entry loaded = readFromDisk(key);
+            mainHandler.post(() -> {
+                // Keep anything stored while we were reading: it is newer.
+                Entry current = memory.get(key);
+                Entry result = current != null ? current : loaded;
+                if (current == null && loaded != null) {
+                    memory.put(key, loaded);
+                }
+                callback.onEntry(result != null && age(result) <= maxStaleMs ? result : null);
+            });
+        });
+    }
+
+    public boolean isFresh(Entry entry) {
+        return age(entry) < ttlMs;
+    }
+
+    private static long age(Entry entry) {
+        return System.currentTimeMillis() - entry.fetchedAt;
+    }
+
+    public void put(String key, String body, String etag, String lastModified) {
+        store(key, new Entry(body, System.currentTimeMillis(), etag, lastModified));
+    }
+
+    /**
+     * Mark an entry as fresh again after the server answered 304 Not Modified.
+     * Only looks in memory, where {@link #get(String, Callback)} left it.
+     *
+     * @param key Normalised city name
+     * @return The refreshed entry, or null if there was none
+     */
+    public Entry touch(String key) {
+        Entry old = peek(key);
+        if (old == null) {
+            return null;
+        }
+        Entry refreshed = new Entry(old.body, System.currentTimeMillis(), old.etag, old.lastModified);
+        store(key, refreshed);
+        return refreshed;
+    }
+
+    private void store(String key, Entry entry) {
+        memory.put(key, entry);
+        diskExecutor.execute(() -> writeToDisk(key, entry));
+    }
+
+    private File fileFor(String key) {
+        try {
+            return new File(dir, URLEncoder.encode(key, "UTF-8") + ".json");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private Entry readFromDisk(String key) {
+        File file = fileFor(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            JSONObject json = new JSONObject(new String(bytes, 0, read, StandardCharsets.UTF_8));
+            return new Entry(json.getString("body"), json.getLong("fetchedAt"),
+                    json.optString("etag", null), json.optString("lastModified", null));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Dropping unreadable cache entry for " + key, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        File file = fileFor(key);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            JSONObject json = new JSONObject();
+            json.put("body", entry.body);
+            json.put("fetchedAt", entry.fetchedAt);
+            json.put("etag", entry.etag);
+            json.put("lastModified", entry.lastModified);
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Could not write cache entry for " + key, e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.weatherappxml;
+
+import android.net.Uri;
+import android.util.Log;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.ParseError;
+import com.android.volley.RequestQueue;
+import com.android.volley.VolleyError;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Fetches weather through {@link WeatherCache} and Volley, sharing one network
+ * call between everyone waiting on the same city.
+ *
+ * <p>Each caller passes a tag. A tag has at most one pending fetch: starting a
+ * new one supersedes the previous, whose listener is dropped and whose request
+ * is cancelled if nobody else is waiting on it. Must be used from the main
+ * thread.</p>
+ */
+public class WeatherFetcher {
+
+    private static final String TAG = "WeatherFetcher";
+
+    public interface Listener {
+        /**
+         * @param item      Decoded response, shared between listeners; treat as read-only
+         * @param fetchedAt When the response was fetched, in milliseconds since the epoch
+         * @param stale     True if this is a cached copy that is being refreshed
+         */
+        void onWeather(MeteoItem item, long fetchedAt, boolean stale);
+
+        /**
+         * @param error       The Volley error
+         * @param hadCachedCopy True if a cached copy was already delivered
+         */
+        void onError(VolleyError error, boolean hadCachedCopy);
+    }
+
+    private static class Waiter {
+        final Object tag;
+        final Listener listener;
+        final boolean hadCachedCopy;
+
+        Waiter(Object tag, Listener listener, boolean hadCachedCopy) {
+            this.tag = tag;
+            this.listener = listener;
+            this.hadCachedCopy = hadCachedCopy;
+        }
+    }
+
+    private static class InFlight {
+        WeatherRequest request;
+        final ArrayList<Waiter> waiters = new ArrayList<>();
+    }
+
+    private final RequestQueue requestQueue;
+    private final WeatherCache cache;
+    private final String apiUrl;
+    private final String apiKey;
+    private final HashMap<String, InFlight> inFlight = new HashMap<>();
+    // Cache lookup each tag is waiting on, if any.
+    private final HashMap<Object, Object> lookups = new HashMap<>();
+    private SnapshotStore snapshots;
+
+    public WeatherFetcher(RequestQueue requestQueue, WeatherCache cache, String apiUrl, String apiKey) {
+        this.requestQueue = requestQueue;
+        this.cache = cache;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+    }
+
+    public WeatherCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Record every response fetched from the network in {@code snapshots}.
+     *
+     * @param snapshots The store, or null to stop recording
+     */
+    public void setSnapshotStore(SnapshotStore snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    public SnapshotStore getSnapshotStore() {
+        return snapshots;
+    }
+
+    /**
+     * Fetch weather for a city on behalf of {@code tag}, superseding any earlier
+     * fetch with the same tag.
+     *
+     * @param cityName City name as typed
+     * @param tag      Identifies the caller
+     * @param listener Receives the cached and/or network result
+     */
+    public void fetch(String cityName, Object tag, Listener listener) {
+        fetch(cityName, 0, tag, listener);
+    }
+
+    /**
+     * Fetch weather for a city whose OpenWeatherMap id is known, which avoids
+     * any ambiguity in the name. The id is then the cache key
+     * (see {@link WeatherCache#keyFor}).
+     *
+     * @param cityName City name
+     * @param cityId   OpenWeatherMap (GeoNames) city id, or 0 to search by name
+     * @param tag      Identifies the caller
+     * @param listener Receives the cached and/or network result
+     */
+    public void fetch(String cityName, long cityId, Object tag, Listener listener) {
+        fetch(cityName, cityId, 0, tag, listener);
+    }
+
+    /**
+     * Like {@link #fetch(String, long, Object, Listener)}, but give up on the
+     * network request after {@code timeoutMs}, without retrying. A caller that
+     * joins a request already in flight for the city gets that request's timeout.
+     *
+     * @param cityName  City name
+     * @param cityId    OpenWeatherMap (GeoNames) city id, or 0 to search by name
+     * @param timeoutMs Timeout in milliseconds, or 0 for Volley's default policy
+     * @param tag       Identifies the caller
+     * @param listener  Receives the cached and/or network result
+     */
+    public void fetch(String cityName, long cityId, int timeoutMs, Object tag, Listener listener) {
+        String key = WeatherCache.keyFor(cityName, cityId);
+        cancelExcept(tag, key);
+
+        // The cache may answer later, from disk; by then the tag may have moved on.
+        Object lookup = new Object();
+        lookups.put(tag, lookup);
+        cache.get(key, cached -> {
+            if (lookups.get(tag) != lookup) {
+                return;
+            }
+            lookups.remove(tag);
+            fetchAfterLookup(key, cityName, cityId, timeoutMs, tag, listener, cached);
+        });
+    }
+
+    private void fetchAfterLookup(String key, String cityName, long cityId, int timeoutMs, Object tag,
+                                  Listener listener, WeatherCache.Entry cached) {
+        MeteoItem cachedItem = cached != null ? decode(key, cached.body) : null;
+        if (cachedItem == null) {
+            cached = null;
+        } else {
+            boolean fresh = cache.isFresh(cached);
+            listener.onWeather(cachedItem, cached.fetchedAt, !fresh);
+            if (fresh) {
+                return;
+            }
+        }
+
+        InFlight pending = inFlight.get(key);
+        if (pending != null) {
+            Log.d(TAG, "Joining in-flight request for " + key);
+            removeWaiters(pending, tag);
+            pending.waiters.add(new Waiter(tag, listener, cached != null));
+            return;
+        }
+
+        pending = new InFlight();
+        pending.waiters.add(new Waiter(tag, listener, cached != null));
+        inFlight.put(key, pending);
+
+        String query = cityId != 0 ? "?id=" + cityId : "?q=" + Uri.encode(cityName.trim());
+        String url = apiUrl + query + "&appid=" + apiKey + "&units=metric";
+        send(key, url, timeoutMs, cached, pending);
+    }
+
+    /**
+     * Issue the network request for {@code pending}, conditional on
+     * {@code cached} if it is not null.
+     */
+    private void send(String key, String url, int timeoutMs, WeatherCache.Entry cached, InFlight pending) {
+        Log.d(TAG, "Fetching " + url);
+        pending.request = new WeatherRequest(url, cached,
+                result -> {
+                    MeteoItem item;
+                    long fetchedAt;
+                    if (result.notModified) {
+                        WeatherCache.Entry touched = cache.touch(key);
+                        item = touched != null ? decode(key, touched.body) : null;
+                        if (item == null && cached != null) {
+                            // The copy we revalidated is gone; ask again for the full body.
+                            Log.d(TAG, "Cached entry for " + key + " vanished after 304, refetching");
+                            send(key, url, timeoutMs, null, pending);
+                            return;
+                        }
+                        if (item == null) {
+                            fail(key, pending, new ParseError(new IllegalStateException(
+                                    "304 Not Modified for an unconditional request")));
+                            return;
+                        }
+                        fetchedAt = touched.fetchedAt;
+                    } else {
+                        item = result.item;
+                        fetchedAt = System.currentTimeMillis();
+                        cache.put(key, result.body, result.etag, result.lastModified);
+                        if (snapshots != null) {
+                            snapshots.save(key, item, fetchedAt);
+                        }
+                    }
+                    inFlight.remove(key);
+                    for (Waiter waiter : pending.waiters) {
+                        waiter.listener.onWeather(item, fetchedAt, false);
+                    }
+                },
+                error -> fail(key, pending, error));
+        pending.request.setTag(key);
+        if (timeoutMs > 0) {
+            pending.request.setRetryPolicy(new DefaultRetryPolicy(timeoutMs, 0, 1f));
+        }
+        requestQueue.add(pending.request);
+    }
+
+    private void fail(String key, InFlight pending, VolleyError error) {
+        inFlight.remove(key);
+        for (Waiter waiter : pending.waiters) {
+            waiter.listener.onError(error, waiter.hadCachedCopy);
+        }
+    }
+
+    private static MeteoItem decode(String key, String body) {
+        try {
+            return MeteoDecoder.decode(body);
+        } catch (JSONException e) {
+            Log.w(TAG, "Ignoring unreadable cached entry for " + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Drop every pending fetch for {@code tag}.
+     *
+     * @param tag Caller tag passed to {@link #fetch}
+     */
+    public void cancel(Object tag) {
+        lookups.remove(tag);
+        cancelExcept(tag, null);
+    }
+
+    private void cancelExcept(Object tag, String keepKey) {
+        Iterator<Map.Entry<String, InFlight>> it = inFlight.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, InFlight> entry = it.next();
+            if (entry.getKey().equals(keepKey)) {
+                continue;
+            }
+            InFlight pending = entry.getValue();
+            removeWaiters(pending, tag);
+            if (pending.waiters.isEmpty()) {
+                Log.d(TAG, "Cancelling superseded request for " + entry.getKey());
+                pending.request.cancel();
+                it.remove();
+            }
+        }
+    }
+
+    private static void removeWaiters(InFlight pending, Object tag) {
+        Iterator<Waiter> it = pending.waiters.iterator();
+        while (it.hasNext()) {
+            if (it.next().tag.equals(tag)) {
+                it.remove();
+            }
+        }
+    }
+}
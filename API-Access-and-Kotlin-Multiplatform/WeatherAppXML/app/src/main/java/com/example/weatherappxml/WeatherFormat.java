@@ -0,0 +1,86 @@
+package com.example.weatherappxml;
+
+import android.text.format.DateFormat;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * Display helpers shared by the single-city screen and the favourites dashboard.
+ */
+public final class WeatherFormat {
+
+    private WeatherFormat() {
+    }
+
+    /**
+     * Convert a decoded response into the item shown on screen. Every request
+     * asks for units=metric, so temperatures are already in °C, as on the
+     * forecast chart.
+     *
+     * @param decoded   Response as decoded by {@link MeteoDecoder}; not modified
+     * @param fetchedAt When the response was fetched, in milliseconds since the epoch
+     * @return A new item stamped with the fetch time for display
+     */
+    public static MeteoItem forDisplay(MeteoItem decoded, long fetchedAt) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(fetchedAt);
+        String dateTime = DateFormat.format("yyyy-MM-dd HH:mm", calendar).toString();
+
+        MeteoItem meteoItem = new MeteoItem(
+                decoded.getCityName(),
+                decoded.getTemperature(),
+                decoded.getFeelsLike(),
+                decoded.getHumidity(),
+                decoded.getWeatherCondition(),
+                decoded.getWeatherDescription(),
+                dateTime
+        );
+        meteoItem.setCityId(decoded.getCityId());
+        return meteoItem;
+    }
+
+    /**
+     * Map a weather condition to its icon.
+     *
+     * @param weatherCondition Weather condition string from API
+     * @return Drawable resource id
+     */
+    public static int iconFor(String weatherCondition) {
+        if (weatherCondition == null) {
+            return R.drawable.unknown;
+        }
+        switch (weatherCondition.toLowerCase(Locale.ROOT)) {
+            case "clear":
+                return R.drawable.clear;
+            case "clouds":
+                return R.drawable.cloudy;
+            case "rain":
+            case "drizzle":
+                return R.drawable.rainy;
+            case "thunderstorm":
+                return R.drawable.thunderstorm;
+            case "snow":
+                return R.drawable.snowy;
+            case "mist":
+            case "fog":
+            case "haze":
+                return R.drawable.foggy;
+            default:
+                return R.drawable.unknown;
+        }
+    }
+
+    /**
+     * Capitalize the first letter of a string.
+     *
+     * @param original The original string.
+     * @return The string with the first letter capitalized.
+     */
+    public static String capitalizeFirstLetter(String original) {
+        if (original == null || original.isEmpty()) {
+            return original;
+        }
+        return original.substring(0, 1).toUpperCase(Locale.ROOT) + original.substring(1);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.weatherappxml;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.android.volley.RequestQueue;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.Volley;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Periodically refreshes every tracked city (the favourites plus the city
+ * last shown) in one job, so the cache and {@link SnapshotStore} are warm when
+ * the app opens. Runs only on a connected network with a healthy battery;
+ * the flex window and a random first delay spread runs out, and a run where
+ * every city failed is retried with exponential back-off.
+ */
+public class WeatherRefreshWorker extends Worker {
+
+    private static final String TAG = "WeatherRefreshWorker";
+    private static final String WORK_NAME = "weather-refresh";
+    private static final long INTERVAL_MINUTES = 60;
+    private static final long FLEX_MINUTES = 20;
+    private static final long BACKOFF_SECONDS = 60;
+    /** Stay well inside WorkManager's 10 minute execution limit. */
+    private static final long RUN_TIMEOUT_MINUTES = 3;
+
+    /** Released when the run completes, or early by {@link #onStopped()}. */
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    public WeatherRefreshWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedule the periodic refresh. Safe to call on every start: an existing
+     * schedule is kept.
+     *
+     * @param context Any context
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(WeatherRefreshWorker.class,
+                INTERVAL_MINUTES, TimeUnit.MINUTES, FLEX_MINUTES, TimeUnit.MINUTES)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                // So installs don't all hit the API at the same minute.
+                .setInitialDelay(new Random().nextInt((int) INTERVAL_MINUTES), TimeUnit.MINUTES)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Called when the constraints no longer hold or the work is cancelled.
+     * Wakes {@link #doWork()} so it cancels the batch instead of waiting out
+     * {@link #RUN_TIMEOUT_MINUTES}.
+     */
+    @Override
+    public void onStopped() {
+        done.countDown();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        RequestQueue requestQueue = Volley.newRequestQueue(context);
+        SnapshotStore snapshots = SnapshotStore.get(context);
+        Favourites favourites = new Favourites(context);
+        LastShownCity lastShown = new LastShownCity(context);
+        WeatherFetcher fetcher = new WeatherFetcher(requestQueue, new WeatherCache(context),
+                MainActivity.API_URL, MainActivity.API_KEY);
+        fetcher.setSnapshotStore(snapshots);
+        BatchWeatherFetcher batchFetcher = new BatchWeatherFetcher(requestQueue, fetcher, favourites,
+                FavouritesActivity.GROUP_URL, MainActivity.API_KEY);
+
+        ArrayList<String> tracked = new ArrayList<>(favourites.getCities());
+        String lastCity = lastShown.getName();
+        long lastCityId = lastShown.getCityId();
+        boolean refreshLastCity = lastCity != null && !favourites.contains(lastCity);
+        int cities = tracked.size() + (refreshLastCity ? 1 : 0);
+        AtomicInteger parts = new AtomicInteger(refreshLastCity ? 2 : 1);
+        AtomicInteger failures = new AtomicInteger();
+        Object lastCityTag = new Object();
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        Runnable cancel = () -> {
+            batchFetcher.cancel();
+            fetcher.cancel(lastCityTag);
+        };
+
+        // The fetchers are main-thread classes; drive them there and wait here.
+        // The favourites go as one batch; the last city shown is fetched on its
+        // own, with the id it was shown with, so it lands under the same key.
+        mainHandler.post(() -> {
+            batchFetcher.refresh(tracked, new BatchWeatherFetcher.Listener() {
+                @Override
+                public void onCity(int index, MeteoItem item, long fetchedAt, boolean stale) {
+                }
+
+                @Override
+                public void onCityError(int index, VolleyError error) {
+                    failures.incrementAndGet();
+                }
+
+                @Override
+                public void onComplete() {
+                    if (parts.decrementAndGet() == 0) {
+                        done.countDown();
+                    }
+                }
+            });
+            if (refreshLastCity) {
+                fetcher.fetch(lastCity, lastCityId, lastCityTag, new WeatherFetcher.Listener() {
+                    @Override
+                    public void onWeather(MeteoItem item, long fetchedAt, boolean stale) {
+                        if (!stale && parts.decrementAndGet() == 0) {
+                            done.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onError(VolleyError error, boolean hadCachedCopy) {
+                        failures.incrementAndGet();
+                        if (parts.decrementAndGet() == 0) {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+        });
+
+        try {
+            boolean finished = done.await(RUN_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            if (isStopped()) {
+                // WorkManager ignores the result of a stopped worker.
+                Log.d(TAG, "Refresh stopped");
+                mainHandler.post(cancel);
+                return Result.retry();
+            }
+            if (!finished) {
+                Log.w(TAG, "Refresh timed out");
+                mainHandler.post(cancel);
+                return Result.retry();
+            }
+            snapshots.sync();
+        } catch (InterruptedException e) {
+            mainHandler.post(cancel);
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        } finally {
+            requestQueue.stop();
+        }
+
+        Log.d(TAG, "Refreshed " + (cities - failures.get()) + " of " + cities + " cities");
+        return cities > 0 && failures.get() == cities ? Result.retry() : Result.success();
+    }
+}
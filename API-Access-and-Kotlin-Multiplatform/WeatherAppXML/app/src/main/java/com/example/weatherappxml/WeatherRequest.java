@@ -0,0 +1,95 @@
+package com.example.weatherappxml;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import org.json.JSONException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GET request for a weather payload that can be made conditional on a cached
+ * ETag / Last-Modified. Volley's own cache is bypassed; {@link WeatherCache}
+ * does the caching.
+ */
+public class WeatherRequest extends Request<WeatherRequest.Result> {
+
+    /**
+     * Either a new body (with its validators and decoded item) or a 304 Not Modified.
+     */
+    public static class Result {
+        public final boolean notModified;
+        public final String body;
+        public final MeteoItem item;
+        public final String etag;
+        public final String lastModified;
+
+        Result(boolean notModified, String body, MeteoItem item, String etag, String lastModified) {
+            this.notModified = notModified;
+            this.body = body;
+            this.item = item;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final Response.Listener<Result> listener;
+    private final Map<String, String> headers = new HashMap<>();
+
+    public WeatherRequest(String url, WeatherCache.Entry cached,
+                          Response.Listener<Result> listener, Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        this.listener = listener;
+        setShouldCache(false);
+        if (cached != null) {
+            if (cached.etag != null) {
+                headers.put("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified != null) {
+                headers.put("If-Modified-Since", cached.lastModified);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    protected Response<Result> parseNetworkResponse(NetworkResponse response) {
+        Map<String, String> responseHeaders = response.headers != null ? response.headers : new HashMap<>();
+        String etag = responseHeaders.get("ETag");
+        String lastModified = responseHeaders.get("Last-Modified");
+
+        if (response.notModified || response.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return Response.success(new Result(true, null, null, etag, lastModified), null);
+        }
+        if (response.data == null) {
+            return Response.error(new ParseError(response));
+        }
+        String charset = HttpHeaderParser.parseCharset(responseHeaders, StandardCharsets.UTF_8.name());
+        try {
+            // Decode here, on Volley's network thread, straight from the response bytes.
+            String body = new String(response.data, charset);
+            MeteoItem item = StandardCharsets.UTF_8.name().equalsIgnoreCase(charset)
+                    ? MeteoDecoder.decode(response.data)
+                    : MeteoDecoder.decode(body);
+            return Response.success(new Result(false, body, item, etag, lastModified), null);
+        } catch (UnsupportedEncodingException | JSONException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(Result response) {
+        listener.onResponse(response);
+    }
+}
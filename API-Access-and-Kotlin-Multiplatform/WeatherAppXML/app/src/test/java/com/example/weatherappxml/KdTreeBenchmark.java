@@ -0,0 +1,75 @@
+package com.example.weatherappxml;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Measures {@link KdTree} build time and nearest-city query latency against a
+ * linear scan, for uniformly spread cities at several dataset sizes.
+ * Correctness is covered by {@link KdTreeTest}.
+ *
+ * See {@link Benchmarks} for how to run it; results go to kd_tree.json.
+ */
+public class KdTreeBenchmark {
+    private static final int[] SIZES = {1_000, 25_000, 200_000};
+    private static final int QUERIES = 100_000;
+    private static final int SCAN_QUERIES = 200;
+    // Each size times one build, after a few untimed ones.
+    private static final int BUILD_WARMUPS = 5;
+
+    private final Benchmarks benchmarks = new Benchmarks();
+    // Keeps the results observable so the queries can't be optimised away.
+    private long sink;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        for (int size : SIZES) {
+            benchmark(size);
+        }
+        System.out.println("sink " + sink);
+        benchmarks.writeJson("kd_tree");
+    }
+
+    private void benchmark(int size) throws Exception {
+        Random random = new Random(size);
+        double[] latLon = randomPoints(random, size);
+        double[] queries = randomPoints(random, QUERIES);
+
+        KdTree[] tree = new KdTree[1];
+        benchmarks.measure(BUILD_WARMUPS, 1, i -> tree[0] = new KdTree(latLon), "op", "build", "cities", size);
+        benchmarks.measure(QUERIES, QUERIES, i -> sink += tree[0].nearest(queries[2 * i], queries[2 * i + 1]),
+                "op", "kd-tree", "cities", size);
+        benchmarks.measure(SCAN_QUERIES, SCAN_QUERIES, i -> sink += linearScan(latLon, queries[2 * i], queries[2 * i + 1]),
+                "op", "scan", "cities", size);
+    }
+
+    // Uniform on the sphere, so polar cells aren't over-populated.
+    private static double[] randomPoints(Random random, int count) {
+        double[] latLon = new double[2 * count];
+        for (int i = 0; i < count; i++) {
+            latLon[2 * i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            latLon[2 * i + 1] = random.nextDouble() * 360 - 180;
+        }
+        return latLon;
+    }
+
+    private static int linearScan(double[] latLon, double lat, double lon) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < latLon.length / 2; i++) {
+            double distance = KdTree.distanceKm(lat, lon, latLon[2 * i], latLon[2 * i + 1]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
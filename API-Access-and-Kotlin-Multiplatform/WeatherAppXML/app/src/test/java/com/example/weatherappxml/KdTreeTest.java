@@ -0,0 +1,108 @@
+package com.example.weatherappxml;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class KdTreeTest {
+
+    @Test
+    public void emptyTreeFindsNothing() {
+        KdTree tree = new KdTree(new double[0]);
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.nearest(48.85, 2.35));
+    }
+
+    @Test
+    public void singlePointIsAlwaysNearest() {
+        KdTree tree = new KdTree(new double[]{48.85, 2.35});
+        assertEquals(0, tree.nearest(-33.87, 151.21));
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        for (int size : new int[]{2, 3, 10, 257, 5_000}) {
+            Random random = new Random(size);
+            double[] latLon = randomPoints(random, size);
+            KdTree tree = new KdTree(latLon);
+            assertEquals(size, tree.size());
+
+            for (int q = 0; q < 500; q++) {
+                double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+                double lon = random.nextDouble() * 360 - 180;
+                int expected = linearScan(latLon, lat, lon);
+                int actual = tree.nearest(lat, lon);
+                // Ties may pick either point; the distance must match.
+                assertEquals("size " + size + ", query " + lat + "," + lon,
+                        distance(latLon, expected, lat, lon), distance(latLon, actual, lat, lon), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void findsNeighboursAcrossTheAntimeridianAndPoles() {
+        double[] latLon = {
+                0, 179.9,     // 0: just west of the antimeridian
+                0, 170,       // 1
+                89.9, 180,    // 2: near the pole, opposite side
+                89, 0,        // 3
+                -10, -175,    // 4
+        };
+        KdTree tree = new KdTree(latLon);
+
+        assertEquals(0, tree.nearest(0, -179.95));
+        assertEquals(2, tree.nearest(89.95, -10));
+        assertEquals(4, tree.nearest(-9, 179));
+    }
+
+    @Test
+    public void duplicatePointsAreFound() {
+        double[] latLon = new double[2 * 100];
+        for (int i = 0; i < 100; i++) {
+            latLon[2 * i] = 45;
+            latLon[2 * i + 1] = i < 50 ? 5 : 6;
+        }
+        KdTree tree = new KdTree(latLon);
+
+        assertEquals(0, distance(latLon, tree.nearest(45, 5), 45, 5), 1e-9);
+        assertEquals(0, distance(latLon, tree.nearest(45, 6), 45, 6), 1e-9);
+    }
+
+    @Test
+    public void distanceIsGreatCircle() {
+        // Paris to London is about 344 km.
+        assertEquals(344, KdTree.distanceKm(48.8566, 2.3522, 51.5074, -0.1278), 1);
+        // A quarter of the way round the equator.
+        assertEquals(Math.PI / 2 * KdTree.EARTH_RADIUS_KM, KdTree.distanceKm(0, 0, 0, 90), 1e-6);
+        assertEquals(0, KdTree.distanceKm(10, 180, 10, -180), 1e-6);
+    }
+
+    // Uniform on the sphere, so polar cells aren't over-populated.
+    private static double[] randomPoints(Random random, int count) {
+        double[] latLon = new double[2 * count];
+        for (int i = 0; i < count; i++) {
+            latLon[2 * i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            latLon[2 * i + 1] = random.nextDouble() * 360 - 180;
+        }
+        return latLon;
+    }
+
+    private static int linearScan(double[] latLon, double lat, double lon) {
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < latLon.length / 2; i++) {
+            double distance = distance(latLon, i, lat, lon);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static double distance(double[] latLon, int i, double lat, double lon) {
+        return KdTree.distanceKm(lat, lon, latLon[2 * i], latLon[2 * i + 1]);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.weatherappxml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LttbTest {
+
+    @Test
+    public void keepsEverythingWhenUnderThreshold() {
+        long[] x = {0, 1, 2, 3, 4};
+        double[] y = {5, 4, 3, 2, 1};
+        int[] out = new int[5];
+
+        assertEquals(5, Lttb.downsample(x, y, 0, 5, 10, out));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, out);
+        assertEquals(3, Lttb.downsample(x, y, 1, 4, 3, out));
+        assertArrayEquals(new int[]{1, 2, 3}, Arrays.copyOf(out, 3));
+    }
+
+    @Test
+    public void tinyThresholdsKeepTheEnds() {
+        long[] x = {0, 1, 2, 3, 4};
+        double[] y = {0, 9, 0, 9, 0};
+        int[] out = new int[2];
+
+        assertEquals(0, Lttb.downsample(x, y, 0, 5, 0, out));
+        assertEquals(1, Lttb.downsample(x, y, 0, 5, 1, out));
+        assertEquals(0, out[0]);
+        assertEquals(2, Lttb.downsample(x, y, 0, 5, 2, out));
+        assertArrayEquals(new int[]{0, 4}, out);
+        assertEquals(0, Lttb.downsample(x, y, 3, 3, 2, out));
+    }
+
+    @Test
+    public void picksOneAscendingPointPerBucketWithinTheRange() {
+        Random random = new Random(1);
+        int n = 1_000;
+        long[] x = new long[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            // Real timestamps are large; the result must not depend on that.
+            x[i] = 1_700_000_000_000L + i * 10_800_000L;
+            y[i] = random.nextGaussian();
+        }
+        int from = 100;
+        int to = 900;
+        int threshold = 50;
+        int[] out = new int[threshold];
+
+        int count = Lttb.downsample(x, y, from, to, threshold, out);
+
+        assertEquals(threshold, count);
+        assertEquals(from, out[0]);
+        assertEquals(to - 1, out[count - 1]);
+        double bucketSize = (double) (to - from - 2) / (threshold - 2);
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int picked = out[bucket + 1];
+            assertTrue("bucket " + bucket + " picked " + picked,
+                    picked >= from + (int) (bucket * bucketSize) + 1
+                            && picked < from + (int) ((bucket + 1) * bucketSize) + 1);
+        }
+    }
+
+    @Test
+    public void keepsSpikes() {
+        int n = 500;
+        long[] x = new long[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i;
+        }
+        y[137] = 40;
+        y[311] = -25;
+        int[] out = new int[20];
+
+        int count = Lttb.downsample(x, y, 0, n, 20, out);
+
+        int[] kept = Arrays.copyOf(out, count);
+        assertTrue(Arrays.toString(kept), Arrays.binarySearch(kept, 137) >= 0);
+        assertTrue(Arrays.toString(kept), Arrays.binarySearch(kept, 311) >= 0);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.weatherappxml;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares {@link MeteoDecoder} with the org.json tree parse it replaced, on a
+ * typical current-weather response. Correctness is covered by
+ * {@link MeteoDecoderTest}.
+ *
+ * See {@link Benchmarks} for how to run it; results go to meteo_decoder.json.
+ */
+public class MeteoDecoderBenchmark {
+    private static final int WARMUP_OPS = 20_000;
+    private static final int OPS = 100_000;
+
+    private static final String RESPONSE = "{\"coord\":{\"lon\":2.3488,\"lat\":48.8534},"
+            + "\"weather\":[{\"id\":803,\"main\":\"Clouds\",\"description\":\"broken clouds\",\"icon\":\"04d\"}],"
+            + "\"base\":\"stations\","
+            + "\"main\":{\"temp\":14.62,\"feels_like\":13.99,\"temp_min\":13.38,\"temp_max\":15.57,"
+            + "\"pressure\":1017,\"humidity\":76,\"sea_level\":1017,\"grnd_level\":1007},"
+            + "\"visibility\":10000,\"wind\":{\"speed\":4.12,\"deg\":250,\"gust\":7.2},"
+            + "\"clouds\":{\"all\":75},\"dt\":1728907200,"
+            + "\"sys\":{\"type\":2,\"id\":2041230,\"country\":\"FR\",\"sunrise\":1728886200,\"sunset\":1728925800},"
+            + "\"timezone\":7200,\"id\":2988507,\"name\":\"Paris\",\"cod\":200}";
+
+    private final Benchmarks benchmarks = new Benchmarks();
+    // Keeps the parses observable so they can't be optimised away.
+    private long sink;
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        String body = RESPONSE;
+        byte[] bytes = RESPONSE.getBytes(StandardCharsets.UTF_8);
+
+        measure("org.json", i -> sink += parseWithJsonObject(body).getHumidity());
+        measure("decoder-bytes", i -> sink += MeteoDecoder.decode(bytes).getHumidity());
+        measure("decoder-string", i -> sink += MeteoDecoder.decode(body).getHumidity());
+        System.out.println("sink " + sink);
+        benchmarks.writeJson("meteo_decoder");
+    }
+
+    // The parse MainActivity used before MeteoDecoder.
+    private static MeteoItem parseWithJsonObject(String body) throws Exception {
+        JSONObject response = new JSONObject(body);
+        JSONObject mainData = response.getJSONObject("main");
+        JSONArray weatherArray = response.getJSONArray("weather");
+        JSONObject weatherObject = weatherArray.getJSONObject(0);
+        return new MeteoItem(
+                response.getString("name"),
+                mainData.getDouble("temp"),
+                mainData.getDouble("feels_like"),
+                mainData.getInt("humidity"),
+                weatherObject.getString("main"),
+                weatherObject.getString("description"),
+                null);
+    }
+
+    private void measure(String parser, Benchmarks.Op body) throws Exception {
+        benchmarks.measure(WARMUP_OPS, OPS, body, "parser", parser);
+    }
+}
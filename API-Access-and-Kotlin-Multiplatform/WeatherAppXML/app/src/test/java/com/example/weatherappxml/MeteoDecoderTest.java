@@ -0,0 +1,107 @@
+package com.example.weatherappxml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+public class MeteoDecoderTest {
+
+    private static final String PARIS = "{\"coord\":{\"lon\":2.3488,\"lat\":48.8534},"
+            + "\"weather\":[{\"id\":803,\"main\":\"Clouds\",\"description\":\"broken clouds\",\"icon\":\"04d\"}],"
+            + "\"main\":{\"temp\":14.62,\"feels_like\":-3.5,\"pressure\":1017,\"humidity\":76},"
+            + "\"id\":2988507,\"name\":\"Paris\",\"cod\":200}";
+
+    @Test
+    public void decodesCurrentWeather() throws JSONException {
+        MeteoItem item = MeteoDecoder.decode(PARIS);
+
+        assertEquals("Paris", item.getCityName());
+        assertEquals(2988507, item.getCityId());
+        assertEquals(14.62, item.getTemperature(), 1e-9);
+        assertEquals(-3.5, item.getFeelsLike(), 1e-9);
+        assertEquals(76, item.getHumidity());
+        assertEquals("Clouds", item.getWeatherCondition());
+        assertEquals("broken clouds", item.getWeatherDescription());
+    }
+
+    @Test
+    public void unescapesStrings() throws JSONException {
+        MeteoItem item = MeteoDecoder.decode("{\"name\":\"Saint-\\u00c9tienne \\\"centre\\\"\","
+                + "\"main\":{\"temp\":1},"
+                + "\"weather\":[{\"main\":\"a\\\\b\\/c\",\"description\":\"one\\ntwo\\tthree\"}]}");
+
+        assertEquals("Saint-Étienne \"centre\"", item.getCityName());
+        assertEquals("a\\b/c", item.getWeatherCondition());
+        assertEquals("one\ntwo\tthree", item.getWeatherDescription());
+    }
+
+    @Test
+    public void keepsUtf8TextAroundEscapes() throws JSONException {
+        MeteoItem item = MeteoDecoder.decode("{\"name\":\"Zürich \\\"été\\\" 日\","
+                + "\"main\":{},\"weather\":[{\"main\":\"Clear\"}]}");
+
+        assertEquals("Zürich \"été\" 日", item.getCityName());
+    }
+
+    @Test
+    public void skipsUnknownValuesContainingDelimiters() throws JSONException {
+        MeteoItem item = MeteoDecoder.decode("{\"note\":\"} ] , \\\" {\","
+                + "\"nested\":[{\"a\":[1,2,{\"b\":null}]},true,false,-1.5e3],"
+                + "\"main\":{\"temp\":2.5e1,\"humidity\":40},"
+                + "\"weather\":[{\"main\":\"Rain\"},{\"main\":\"Mist\"}],"
+                + "\"name\":null}");
+
+        assertNull(item.getCityName());
+        assertEquals(25, item.getTemperature(), 1e-9);
+        assertEquals(40, item.getHumidity());
+        // Only the first condition is kept.
+        assertEquals("Rain", item.getWeatherCondition());
+    }
+
+    @Test
+    public void rejectsIncompleteResponses() {
+        assertThrows(JSONException.class, () -> MeteoDecoder.decode("{\"main\":{\"temp\":1}}"));
+        assertThrows(JSONException.class, () -> MeteoDecoder.decode("{\"main\":{},\"weather\":[]}"));
+        assertThrows(JSONException.class, () -> MeteoDecoder.decode(PARIS.substring(0, PARIS.length() - 10)));
+        assertThrows(JSONException.class, () -> MeteoDecoder.decode("{\"name\":\"unterminated"));
+    }
+
+    @Test
+    public void decodesGroupItemsWithTheirOffsets() throws JSONException {
+        String london = PARIS.replace("Paris", "London").replace("2988507", "2643743");
+        String group = "{\"cnt\":2,\"list\":[" + PARIS + ",\n  " + london + "]}";
+        // Decode from the middle of a larger buffer, as Volley may hand over.
+        byte[] padded = ("xxxx" + group + "yyyy").getBytes(StandardCharsets.UTF_8);
+        int offset = 4;
+        int length = group.getBytes(StandardCharsets.UTF_8).length;
+
+        ArrayList<MeteoItem> items = new ArrayList<>();
+        ArrayList<String> bodies = new ArrayList<>();
+        MeteoDecoder.decodeGroup(padded, offset, length, (item, start, end) -> {
+            items.add(item);
+            bodies.add(new String(padded, start, end - start, StandardCharsets.UTF_8));
+        });
+
+        assertEquals(2, items.size());
+        assertEquals("Paris", items.get(0).getCityName());
+        assertEquals(2643743, items.get(1).getCityId());
+        // Each slice is a complete response on its own, which is what gets cached.
+        assertEquals(PARIS, bodies.get(0));
+        assertEquals(london, bodies.get(1));
+        assertEquals("London", MeteoDecoder.decode(bodies.get(1)).getCityName());
+    }
+
+    @Test
+    public void decodesEmptyGroup() throws JSONException {
+        byte[] data = "{\"cnt\":0,\"list\":[]}".getBytes(StandardCharsets.UTF_8);
+        ArrayList<MeteoItem> items = new ArrayList<>();
+        MeteoDecoder.decodeGroup(data, 0, data.length, (item, start, end) -> items.add(item));
+        assertEquals(0, items.size());
+    }
+}
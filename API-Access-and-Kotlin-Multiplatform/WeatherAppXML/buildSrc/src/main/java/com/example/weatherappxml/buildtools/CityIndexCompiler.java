@@ -0,0 +1,206 @@
+package com.example.weatherappxml.buildtools;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.BufferedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Compiles a GeoNames city dump (e.g. cities500.txt) into the binary index
+ * read by the app's {@code CityIndex}: records sorted by normalised name, with
+ * the {@link #TOP_K} most populous matches precomputed for every one- and
+ * two-letter prefix. The layout must stay in sync with {@code CityIndex}.
+ */
+public final class CityIndexCompiler {
+
+    public static final int MAGIC = 0x43494458; // "CIDX"
+    public static final int VERSION = 1;
+    public static final int TOP_K = 8;
+    /** One slot per letter, then one per pair of letters. */
+    public static final int PREFIX_SLOTS = 26 + 26 * 26;
+
+    private static final class City {
+        final byte[] key;
+        final byte[] name;
+        final int id;
+        final int population;
+        final float latitude;
+        final float longitude;
+        final short country;
+
+        City(byte[] key, byte[] name, int id, int population, float latitude, float longitude, short country) {
+            this.key = key;
+            this.name = name;
+            this.id = id;
+            this.population = population;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.country = country;
+        }
+    }
+
+    private CityIndexCompiler() {
+    }
+
+    /**
+     * Same normalisation as the app's {@code CityIndex.normalize}.
+     */
+    static String normalize(String name) {
+        String trimmed = name.replace('-', ' ').trim().replaceAll("\\s+", " ");
+        String decomposed = Normalizer.normalize(trimmed, Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    public static void compile(File input, File output) throws IOException {
+        ArrayList<City> cities = read(input);
+        cities.sort(Comparator.<City, byte[]>comparing(c -> c.key, Arrays::compareUnsigned)
+                .thenComparing(c -> -c.population));
+        write(cities, output);
+    }
+
+    private static ArrayList<City> read(File input) throws IOException {
+        ArrayList<City> cities = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(input.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                // geonameid, name, asciiname, alternatenames, latitude, longitude, feature class,
+                // feature code, country code, cc2, admin1-4, population, ...
+                String[] cols = line.split("\t", -1);
+                if (cols.length < 15) {
+                    throw new IOException(input + ":" + lineNumber + ": expected GeoNames columns");
+                }
+                String key = normalize(cols[1]);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                String country = cols[8].length() == 2 ? cols[8] : "  ";
+                cities.add(new City(
+                        key.getBytes(StandardCharsets.UTF_8),
+                        cols[1].getBytes(StandardCharsets.UTF_8),
+                        Integer.parseInt(cols[0]),
+                        cols[14].isEmpty() ? 0 : (int) Math.min(Integer.MAX_VALUE, Long.parseLong(cols[14])),
+                        Float.parseFloat(cols[4]),
+                        Float.parseFloat(cols[5]),
+                        (short) (country.charAt(0) << 8 | country.charAt(1))));
+            }
+        }
+        return cities;
+    }
+
+    private static void write(ArrayList<City> cities, File output) throws IOException {
+        int count = cities.size();
+        int[] prefixTable = buildPrefixTable(cities);
+        int keyBlobSize = 0;
+        int nameBlobSize = 0;
+        for (City city : cities) {
+            keyBlobSize += city.key.length;
+            nameBlobSize += city.name.length;
+        }
+
+        output.getAbsoluteFile().getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(TOP_K);
+            out.writeInt(PREFIX_SLOTS);
+            out.writeInt(keyBlobSize);
+            out.writeInt(nameBlobSize);
+            out.writeInt(0);
+
+            int offset = 0;
+            for (City city : cities) {
+                out.writeInt(offset);
+                offset += city.key.length;
+            }
+            out.writeInt(offset);
+            offset = 0;
+            for (City city : cities) {
+                out.writeInt(offset);
+                offset += city.name.length;
+            }
+            out.writeInt(offset);
+            for (City city : cities) {
+                out.writeInt(city.population);
+            }
+            for (City city : cities) {
+                out.writeInt(city.id);
+            }
+            for (City city : cities) {
+                out.writeFloat(city.latitude);
+            }
+            for (City city : cities) {
+                out.writeFloat(city.longitude);
+            }
+            for (City city : cities) {
+                out.writeShort(city.country);
+            }
+            for (int record : prefixTable) {
+                out.writeInt(record);
+            }
+            for (City city : cities) {
+                out.write(city.key);
+            }
+            for (City city : cities) {
+                out.write(city.name);
+            }
+        }
+    }
+
+    // Top-K record indices by population for each prefix slot, -1 padded.
+    private static int[] buildPrefixTable(ArrayList<City> cities) {
+        int[] table = new int[PREFIX_SLOTS * TOP_K];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < cities.size(); i++) {
+            byte[] key = cities.get(i).key;
+            int first = letter(key, 0);
+            if (first < 0) {
+                continue;
+            }
+            offer(table, first, i, cities);
+            int second = letter(key, 1);
+            if (second >= 0) {
+                offer(table, 26 + first * 26 + second, i, cities);
+            }
+        }
+        return table;
+    }
+
+    private static int letter(byte[] key, int index) {
+        if (index >= key.length || key[index] < 'a' || key[index] > 'z') {
+            return -1;
+        }
+        return key[index] - 'a';
+    }
+
+    private static void offer(int[] table, int slot, int record, ArrayList<City> cities) {
+        int base = slot * TOP_K;
+        int population = cities.get(record).population;
+        int pos = TOP_K;
+        while (pos > 0 && (table[base + pos - 1] < 0
+                || cities.get(table[base + pos - 1]).population < population)) {
+            pos--;
+        }
+        if (pos == TOP_K) {
+            return;
+        }
+        System.arraycopy(table, base + pos, table, base + pos + 1, TOP_K - pos - 1);
+        table[base + pos] = record;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.weatherappxml.buildtools;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Generates the {@code cities.idx} asset from the bundled GeoNames city list.
+ */
+public abstract class CompileCityIndexTask extends DefaultTask {
+
+    public static final String ASSET_NAME = "cities.idx";
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getCityList();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    @TaskAction
+    public void compile() throws IOException {
+        File output = getOutputDir().file(ASSET_NAME).get().getAsFile();
+        CityIndexCompiler.compile(getCityList().get().getAsFile(), output);
+        getLogger().info("Wrote {} ({} bytes)", output, output.length());
+    }
+}
@@ -1,21 +1,50 @@
 package com.example.persistance_des_donnees;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.EditText;
 import android.widget.Button;
+import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.util.HashSet;
+
 public class MainActivity extends AppCompatActivity {
 
     private EditText nomEditText, emailEditText;
-    private SharedPreferences sharedpreferences;
-    private static final String PREF_NAME = "mypref";
+    private WriteBehindStore store;
+    // Fields the user changed before the store finished loading; the initial fill skips them.
+    private final HashSet<EditText> editedFields = new HashSet<>();
+    private boolean filling;
+    private boolean loadRequested;
+    // The last attempt to open the store failed; loadData() asks for another.
+    private boolean storeFailed;
     private static final String KEY_NAME = "Name";
     private static final String KEY_EMAIL = "Email";
 
+    private final StorePreloader.Callback onStoreReady = new StorePreloader.Callback() {
+        @Override
+        public void onReady(WriteBehindStore readyStore) {
+            if (isDestroyed()) {
+                return;
+            }
+            store = readyStore;
+            fillFields(loadRequested);
+        }
+
+        @Override
+        public void onError(RuntimeException error) {
+            if (isDestroyed()) {
+                return;
+            }
+            storeFailed = true;
+            Toast.makeText(MainActivity.this, R.string.store_error, Toast.LENGTH_LONG).show();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -24,8 +53,6 @@ public class MainActivity extends AppCompatActivity {
         nomEditText = findViewById(R.id.nomEditText);
         emailEditText = findViewById(R.id.emailEditText);
 
-        sharedpreferences = getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-
         Button enregistrerButton = findViewById(R.id.enregistrerButton);
         Button chargerButton = findViewById(R.id.chargerButton);
         Button effacerButton = findViewById(R.id.effacerButton);
@@ -51,31 +78,110 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        loadData();
+        trackEdits(nomEditText);
+        trackEdits(emailEditText);
+
+        // The store is opened in the background at process start; fill the fields once it's ready.
+        StorePreloader.whenReady(this, onStoreReady);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        StorePreloader.cancel(onStoreReady);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Doesn't wait for the write; it completes on the store's writer thread.
+        if (store != null) {
+            store.flushAsync();
+        }
+    }
+
+    private void trackEdits(EditText field) {
+        field.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!filling) {
+                    editedFields.add(field);
+                }
+            }
+        });
     }
 
     private void saveData() {
-        SharedPreferences.Editor editor = sharedpreferences.edit();
-        editor.putString(KEY_NAME, nomEditText.getText().toString());
-        editor.putString(KEY_EMAIL, emailEditText.getText().toString());
-        editor.apply(); // Use apply() instead of commit() for better performance
+        String name = nomEditText.getText().toString();
+        String email = emailEditText.getText().toString();
+        // Runs now if the store is open, otherwise as soon as it is; the callback
+        // holds the two strings and the application context, not this activity.
+        StorePreloader.whenReady(this, orReportError(getApplicationContext(), readyStore -> {
+            // Coalesced in memory and written in the background; see WriteBehindStore.
+            readyStore.putString(KEY_NAME, name);
+            readyStore.putString(KEY_EMAIL, email);
+        }));
     }
 
     private void loadData() {
-        if (sharedpreferences.contains(KEY_NAME)) {
-            nomEditText.setText(sharedpreferences.getString(KEY_NAME, ""));
+        if (store == null) {
+            // Filled, overwriting any edits, once the store is ready.
+            loadRequested = true;
+            if (storeFailed) {
+                storeFailed = false;
+                StorePreloader.whenReady(this, onStoreReady);
+            }
+            return;
         }
-        if (sharedpreferences.contains(KEY_EMAIL)) {
-            emailEditText.setText(sharedpreferences.getString(KEY_EMAIL, ""));
+        fillFields(true);
+    }
+
+    // Copies stored values into the fields; unless `force`, leaves alone the ones the user has typed in.
+    private void fillFields(boolean force) {
+        fillField(nomEditText, KEY_NAME, force);
+        fillField(emailEditText, KEY_EMAIL, force);
+    }
+
+    private void fillField(EditText field, String key, boolean force) {
+        if (!store.contains(key) || (!force && editedFields.contains(field))) {
+            return;
         }
+        filling = true;
+        field.setText(store.getString(key, ""));
+        filling = false;
     }
 
     private void clearData() {
-        SharedPreferences.Editor editor = sharedpreferences.edit();
-        editor.remove(KEY_NAME);
-        editor.remove(KEY_EMAIL);
-        editor.apply();
+        StorePreloader.whenReady(this, orReportError(getApplicationContext(), readyStore -> {
+            readyStore.remove(KEY_NAME);
+            readyStore.remove(KEY_EMAIL);
+        }));
+        loadRequested = false;
         nomEditText.setText("");
         emailEditText.setText("");
     }
-}
\ No newline at end of file
+
+    // Wraps `onReady` so a failure to open the store is reported. Static, so a pending
+    // callback holds the application context rather than this activity.
+    private static StorePreloader.Callback orReportError(Context appContext, StorePreloader.Callback onReady) {
+        return new StorePreloader.Callback() {
+            @Override
+            public void onReady(WriteBehindStore readyStore) {
+                onReady.onReady(readyStore);
+            }
+
+            @Override
+            public void onError(RuntimeException error) {
+                Toast.makeText(appContext, R.string.store_error, Toast.LENGTH_LONG).show();
+            }
+        };
+    }
+}
@@ -0,0 +1,662 @@
+package com.example.persistance_des_donnees;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Key-value store kept as an append-only record log in a memory-mapped file.
+// Each put appends one CRC-checked record, so a write costs O(record) instead of
+// rewriting the whole file like SharedPreferences does. Reads are served from an
+// in-memory ConcurrentHashMap without locking. When most of the log is
+// overwritten records, it is compacted on a background thread.
+//
+// The file is shared between processes: writers take an exclusive lock on a
+// side ".lock" file, append, and bump a sequence number in the mapped header.
+// Readers compare that number with the last one they saw and only replay the
+// records appended since then when it moved. Compaction writes a new file and
+// marks the old one retired, which tells other processes to re-open.
+//
+// File layout: a 16 byte header (magic, format version, end offset, sequence),
+// then records of [crc32][length][type][key length][key][value].
+public class MappedKVStore {
+    private static final String TAG = "MappedKVStore";
+
+    private static final int MAGIC = 0x4b565331; // "KVS1"
+    private static final int RETIRED_MAGIC = 0x4b565330; // replaced by a compacted file
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OFFSET_POS = 8;
+    private static final int SEQUENCE_POS = 12;
+    private static final int RECORD_HEADER_SIZE = 8; // crc + length
+
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    private static final int COMPACT_MIN_BYTES = 64 * 1024;
+    // How often other processes' writes are checked for while listeners are registered.
+    private static final long WATCH_INTERVAL_MS = 250;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_FLOAT = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+    private static final byte TYPE_REMOVE = 6;
+    private static final byte TYPE_CLEAR = 7;
+
+    private static final HashMap<String, MappedKVStore> instances = new HashMap<>();
+    private static final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface OnChangeListener {
+        // Called on the main thread after `key` changed in this or another process.
+        void onChanged(MappedKVStore store, String key);
+    }
+
+    // One instance per file and process, like Context.getSharedPreferences.
+    public static MappedKVStore open(Context context, String name) {
+        File file = new File(context.getFilesDir(), name + ".kvs");
+        synchronized (instances) {
+            MappedKVStore store = instances.get(file.getPath());
+            if (store == null) {
+                try {
+                    store = new MappedKVStore(file);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot open " + file, e);
+                }
+                instances.put(file.getPath(), store);
+            }
+            return store;
+        }
+    }
+
+    private final File file;
+    private final ConcurrentHashMap<String, Object> values = new ConcurrentHashMap<>();
+    // Size of the latest record per key; guarded by `this`.
+    private final HashMap<String, Integer> recordSizes = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final FileChannel lockChannel;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    // Sequence number of the last record applied to `values`.
+    private volatile int sequence;
+    private int end;
+    private int liveBytes;
+    private boolean compactionQueued;
+    private boolean closed;
+
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<OnChangeListener>> keyListeners = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<OnChangeListener> allKeysListeners = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> watcher;
+
+    MappedKVStore(File file) throws IOException {
+        this.file = file;
+        lockChannel = new RandomAccessFile(file.getPath() + ".lock", "rw").getChannel();
+        FileLock lock = lockChannel.lock();
+        try {
+            map(file);
+            load();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void map(File target) throws IOException {
+        raf = new RandomAccessFile(target, "rw");
+        channel = raf.getChannel();
+        long capacity = Math.max(INITIAL_CAPACITY, channel.size());
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    // Reads the whole file. Called with the exclusive file lock held.
+    private void load() {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(SEQUENCE_POS, 0);
+            sequence = 0;
+            setEnd(HEADER_SIZE);
+            return;
+        }
+
+        end = HEADER_SIZE;
+        int storedEnd = Math.min(buffer.getInt(END_OFFSET_POS), buffer.capacity());
+        int pos = replay(HEADER_SIZE, storedEnd, null);
+        if (pos != storedEnd) {
+            setEnd(pos);
+        } else {
+            end = pos;
+        }
+        sequence = buffer.getInt(SEQUENCE_POS);
+    }
+
+    // Applies the records between `from` and `to`, adding changed keys to `changed`
+    // if given. Returns the offset after the last valid record.
+    private int replay(int from, int to, Set<String> changed) {
+        int pos = from;
+        while (pos + RECORD_HEADER_SIZE <= to) {
+            int recordCrc = buffer.getInt(pos);
+            int length = buffer.getInt(pos + 4);
+            // Written so a corrupt, huge length can't overflow into a passing check.
+            if (length <= 0 || length > to - pos - RECORD_HEADER_SIZE) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(pos + RECORD_HEADER_SIZE);
+            view.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != recordCrc) {
+                // Torn or corrupt tail: keep everything before it.
+                Log.w(TAG, file.getName() + ": bad record at " + pos + ", truncating");
+                break;
+            }
+            apply(ByteBuffer.wrap(payload), RECORD_HEADER_SIZE + length, changed);
+            pos += RECORD_HEADER_SIZE + length;
+        }
+        return pos;
+    }
+
+    private void apply(ByteBuffer payload, int recordSize, Set<String> changed) {
+        byte type = payload.get();
+        byte[] keyBytes = new byte[payload.getShort() & 0xffff];
+        payload.get(keyBytes);
+        String key = new String(keyBytes, StandardCharsets.UTF_8);
+
+        Object value;
+        switch (type) {
+            case TYPE_STRING:
+                byte[] bytes = new byte[payload.getInt()];
+                payload.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+                break;
+            case TYPE_INT:
+                value = payload.getInt();
+                break;
+            case TYPE_LONG:
+                value = payload.getLong();
+                break;
+            case TYPE_FLOAT:
+                value = payload.getFloat();
+                break;
+            case TYPE_BOOLEAN:
+                value = payload.get() != 0;
+                break;
+            case TYPE_CLEAR:
+                if (changed != null) {
+                    changed.addAll(values.keySet());
+                }
+                values.clear();
+                recordSizes.clear();
+                liveBytes = 0;
+                return;
+            default:
+                value = null;
+                break;
+        }
+        update(key, value, recordSize);
+        if (changed != null) {
+            changed.add(key);
+        }
+    }
+
+    private void update(String key, Object value, int recordSize) {
+        Integer previous = recordSizes.remove(key);
+        if (previous != null) {
+            liveBytes -= previous;
+        }
+        if (value == null) {
+            values.remove(key);
+        } else {
+            values.put(key, value);
+            recordSizes.put(key, recordSize);
+            liveBytes += recordSize;
+        }
+    }
+
+    private void setEnd(int newEnd) {
+        end = newEnd;
+        buffer.putInt(END_OFFSET_POS, newEnd);
+    }
+
+    // --- reads: lock-free unless another process wrote since the last read ---
+
+    private void refreshIfChanged() {
+        MappedByteBuffer current = buffer;
+        if (current.getInt(SEQUENCE_POS) != sequence || current.getInt(0) == RETIRED_MAGIC) {
+            refresh();
+        }
+    }
+
+    private synchronized void refresh() {
+        try {
+            FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, true);
+            try {
+                catchUp();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot refresh " + file.getName(), e);
+        }
+    }
+
+    // Brings `values` up to date with writes from other processes. Called holding
+    // the monitor and a file lock.
+    private void catchUp() throws IOException {
+        Set<String> changed = new HashSet<>();
+        if (buffer.getInt(0) == RETIRED_MAGIC) {
+            // Another process compacted the file: reload it and diff against what we had.
+            HashMap<String, Object> before = new HashMap<>(values);
+            channel.close();
+            raf.close();
+            map(file);
+            values.clear();
+            recordSizes.clear();
+            liveBytes = 0;
+            int storedEnd = Math.min(buffer.getInt(END_OFFSET_POS), buffer.capacity());
+            end = replay(HEADER_SIZE, storedEnd, null);
+            sequence = buffer.getInt(SEQUENCE_POS);
+            for (Map.Entry<String, Object> entry : before.entrySet()) {
+                if (!Objects.equals(entry.getValue(), values.get(entry.getKey()))) {
+                    changed.add(entry.getKey());
+                }
+            }
+            for (String key : values.keySet()) {
+                if (!before.containsKey(key)) {
+                    changed.add(key);
+                }
+            }
+        } else {
+            int storedSequence = buffer.getInt(SEQUENCE_POS);
+            if (storedSequence == sequence) {
+                return;
+            }
+            int storedEnd = buffer.getInt(END_OFFSET_POS);
+            if (storedEnd > buffer.capacity()) {
+                // The writer grew the file past our mapping.
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            }
+            end = replay(end, storedEnd, changed);
+            sequence = storedSequence;
+        }
+        notifyChanged(changed);
+    }
+
+    public boolean contains(String key) {
+        refreshIfChanged();
+        return values.containsKey(key);
+    }
+
+    public String getString(String key, String defValue) {
+        refreshIfChanged();
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : defValue;
+    }
+
+    public int getInt(String key, int defValue) {
+        refreshIfChanged();
+        Object value = values.get(key);
+        return value instanceof Integer ? (Integer) value : defValue;
+    }
+
+    public long getLong(String key, long defValue) {
+        refreshIfChanged();
+        Object value = values.get(key);
+        return value instanceof Long ? (Long) value : defValue;
+    }
+
+    public float getFloat(String key, float defValue) {
+        refreshIfChanged();
+        Object value = values.get(key);
+        return value instanceof Float ? (Float) value : defValue;
+    }
+
+    public boolean getBoolean(String key, boolean defValue) {
+        refreshIfChanged();
+        Object value = values.get(key);
+        return value instanceof Boolean ? (Boolean) value : defValue;
+    }
+
+    public Map<String, ?> getAll() {
+        refreshIfChanged();
+        return new HashMap<>(values);
+    }
+
+    // --- writes: one appended record each ---
+
+    public void putString(String key, String value) {
+        if (value == null) {
+            remove(key);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = newPayload(TYPE_STRING, key, 4 + bytes.length);
+        payload.putInt(bytes.length).put(bytes);
+        append(payload, key, value);
+    }
+
+    public void putInt(String key, int value) {
+        append(newPayload(TYPE_INT, key, 4).putInt(value), key, value);
+    }
+
+    public void putLong(String key, long value) {
+        append(newPayload(TYPE_LONG, key, 8).putLong(value), key, value);
+    }
+
+    public void putFloat(String key, float value) {
+        append(newPayload(TYPE_FLOAT, key, 4).putFloat(value), key, value);
+    }
+
+    public void putBoolean(String key, boolean value) {
+        append(newPayload(TYPE_BOOLEAN, key, 1).put((byte) (value ? 1 : 0)), key, value);
+    }
+
+    public void remove(String key) {
+        if (contains(key)) {
+            append(newPayload(TYPE_REMOVE, key, 0), key, null);
+        }
+    }
+
+    public synchronized void clear() {
+        try (Locked ignored = lockExclusive()) {
+            Set<String> cleared = new HashSet<>(values.keySet());
+            writeRecord(newPayload(TYPE_CLEAR, "", 0));
+            values.clear();
+            recordSizes.clear();
+            liveBytes = 0;
+            notifyChanged(cleared);
+        }
+        maybeCompact();
+    }
+
+    // Flushes mapped pages to storage. Not needed for crash safety of the process,
+    // only to survive power loss.
+    public synchronized void sync() {
+        buffer.force();
+    }
+
+    // Releases the file. The store must not be used afterwards. The mapping itself
+    // stays until the buffer is garbage collected; Java has no way to unmap it.
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (watcher != null) {
+            watcher.cancel(false);
+            watcher = null;
+        }
+        synchronized (instances) {
+            instances.remove(file.getPath(), this);
+        }
+        channel.close();
+        raf.close();
+        lockChannel.close();
+    }
+
+    private static ByteBuffer newPayload(byte type, String key, int valueSize) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xffff) {
+            throw new IllegalArgumentException("key too long");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(1 + 2 + keyBytes.length + valueSize);
+        payload.put(type).putShort((short) keyBytes.length).put(keyBytes);
+        return payload;
+    }
+
+    private synchronized void append(ByteBuffer payload, String key, Object value) {
+        try (Locked ignored = lockExclusive()) {
+            int recordSize = writeRecord(payload);
+            update(key, value, recordSize);
+            notifyChanged(Collections.singleton(key));
+        }
+        maybeCompact();
+    }
+
+    // Holds the cross-process write lock; catches up with other writers on entry.
+    private final class Locked implements AutoCloseable {
+        private final FileLock lock;
+
+        Locked(FileLock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() {
+            try {
+                lock.release();
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot unlock " + file.getName(), e);
+            }
+        }
+    }
+
+    private Locked lockExclusive() {
+        FileLock lock;
+        try {
+            lock = lockChannel.lock();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot lock " + file, e);
+        }
+        Locked locked = new Locked(lock);
+        try {
+            catchUp();
+            return locked;
+        } catch (IOException | RuntimeException e) {
+            // Otherwise every later writer in this process would wait on a lock nobody releases.
+            locked.close();
+            throw e instanceof RuntimeException
+                    ? (RuntimeException) e
+                    : new IllegalStateException("Cannot catch up with " + file, e);
+        }
+    }
+
+    // Appends one record and publishes it by moving the end offset and sequence number.
+    private int writeRecord(ByteBuffer payload) {
+        byte[] bytes = payload.array();
+        int recordSize = RECORD_HEADER_SIZE + bytes.length;
+        ensureCapacity(end + recordSize);
+
+        crc.reset();
+        crc.update(bytes);
+        buffer.putInt(end, (int) crc.getValue());
+        buffer.putInt(end + 4, bytes.length);
+        ByteBuffer view = buffer.duplicate();
+        view.position(end + RECORD_HEADER_SIZE);
+        view.put(bytes);
+        // Publish the record only after it is fully written.
+        setEnd(end + recordSize);
+        sequence++;
+        buffer.putInt(SEQUENCE_POS, sequence);
+        return recordSize;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= buffer.capacity()) {
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < needed) {
+            capacity *= 2;
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot grow " + file, e);
+        }
+    }
+
+    // --- compaction ---
+
+    private void maybeCompact() {
+        if (!compactionQueued && end > COMPACT_MIN_BYTES && end - HEADER_SIZE > 2 * liveBytes) {
+            compactionQueued = true;
+            background.execute(this::compact);
+        }
+    }
+
+    // Rewrites only the live entries into a new file and swaps it in.
+    synchronized void compact() {
+        compactionQueued = false;
+        if (closed) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Locked ignored = lockExclusive()) {
+            try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+                out.setLength(0);
+                out.seek(HEADER_SIZE);
+                int pos = HEADER_SIZE;
+                HashMap<String, Integer> newSizes = new HashMap<>();
+                for (Map.Entry<String, Object> entry : values.entrySet()) {
+                    byte[] record = encode(entry.getKey(), entry.getValue());
+                    out.write(record);
+                    pos += record.length;
+                    newSizes.put(entry.getKey(), record.length);
+                }
+                out.seek(0);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(pos);
+                out.writeInt(sequence);
+                out.getFD().sync();
+
+                if (!tmp.renameTo(file)) {
+                    throw new IOException("rename failed");
+                }
+                // Processes still mapping the old file see this and re-open.
+                buffer.putInt(0, RETIRED_MAGIC);
+                channel.close();
+                raf.close();
+                map(file);
+                end = pos;
+                recordSizes.clear();
+                recordSizes.putAll(newSizes);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Compaction of " + file.getName() + " failed", e);
+            tmp.delete();
+        }
+    }
+
+    private byte[] encode(String key, Object value) {
+        ByteBuffer payload;
+        if (value instanceof String) {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            payload = newPayload(TYPE_STRING, key, 4 + bytes.length);
+            payload.putInt(bytes.length).put(bytes);
+        } else if (value instanceof Integer) {
+            payload = newPayload(TYPE_INT, key, 4).putInt((Integer) value);
+        } else if (value instanceof Long) {
+            payload = newPayload(TYPE_LONG, key, 8).putLong((Long) value);
+        } else if (value instanceof Float) {
+            payload = newPayload(TYPE_FLOAT, key, 4).putFloat((Float) value);
+        } else {
+            payload = newPayload(TYPE_BOOLEAN, key, 1).put((byte) (((Boolean) value) ? 1 : 0));
+        }
+
+        byte[] bytes = payload.array();
+        crc.reset();
+        crc.update(bytes);
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length)
+                .putInt((int) crc.getValue())
+                .putInt(bytes.length)
+                .put(bytes)
+                .array();
+    }
+
+    // --- change listeners ---
+
+    // Listens to one key, or to every key if `key` is null. While any listener is
+    // registered, the shared sequence number is polled to pick up other processes' writes.
+    public synchronized void registerListener(String key, OnChangeListener listener) {
+        if (key == null) {
+            allKeysListeners.addIfAbsent(listener);
+        } else {
+            keyListeners.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).addIfAbsent(listener);
+        }
+        if (watcher == null) {
+            watcher = background.scheduleWithFixedDelay(this::refreshIfChanged,
+                    WATCH_INTERVAL_MS, WATCH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void unregisterListener(String key, OnChangeListener listener) {
+        if (key == null) {
+            allKeysListeners.remove(listener);
+        } else {
+            CopyOnWriteArrayList<OnChangeListener> listeners = keyListeners.get(key);
+            if (listeners != null) {
+                listeners.remove(listener);
+                if (listeners.isEmpty()) {
+                    keyListeners.remove(key);
+                }
+            }
+        }
+        if (watcher != null && allKeysListeners.isEmpty() && keyListeners.isEmpty()) {
+            watcher.cancel(false);
+            watcher = null;
+        }
+    }
+
+    private void notifyChanged(Set<String> keys) {
+        if (keys.isEmpty() || (allKeysListeners.isEmpty() && keyListeners.isEmpty())) {
+            return;
+        }
+        for (String key : keys) {
+            CopyOnWriteArrayList<OnChangeListener> listeners = keyListeners.get(key);
+            if (listeners != null) {
+                for (OnChangeListener listener : listeners) {
+                    mainHandler.post(() -> listener.onChanged(this, key));
+                }
+            }
+            for (OnChangeListener listener : allKeysListeners) {
+                mainHandler.post(() -> listener.onChanged(this, key));
+            }
+        }
+    }
+
+    // Copies every entry of an existing SharedPreferences file into this store.
+    public synchronized void importFrom(SharedPreferences prefs) {
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                putString(entry.getKey(), (String) value);
+            } else if (value instanceof Integer) {
+                putInt(entry.getKey(), (Integer) value);
+            } else if (value instanceof Long) {
+                putLong(entry.getKey(), (Long) value);
+            } else if (value instanceof Float) {
+                putFloat(entry.getKey(), (Float) value);
+            } else if (value instanceof Boolean) {
+                putBoolean(entry.getKey(), (Boolean) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.persistance_des_donnees;
+
+import android.app.Application;
+
+public class PersistanceApp extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Start reading the preference store before any activity asks for it.
+        StorePreloader.start(this);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.persistance_des_donnees;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+
+// Opens the preference store on a background thread as soon as the process
+// starts, so the first read in an activity doesn't wait on disk I/O. Callers
+// register with whenReady() and are called back on the main thread. If the
+// store can't be opened, waiting callers get onError() and the next
+// whenReady() tries again.
+public final class StorePreloader {
+    private static final String TAG = "StorePreloader";
+    public static final String PREF_NAME = "mypref";
+
+    public interface Callback {
+        void onReady(WriteBehindStore store);
+
+        // Called instead of onReady() when opening or migrating the store failed.
+        default void onError(RuntimeException error) {
+        }
+    }
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final ArrayList<Callback> waiting = new ArrayList<>();
+    private static WriteBehindStore store;
+    private static boolean started;
+
+    private StorePreloader() {
+    }
+
+    public static synchronized void start(Context context) {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        final Context appContext = context.getApplicationContext();
+        Thread thread = new Thread(() -> {
+            long begin = System.nanoTime();
+            WriteBehindStore opened;
+            try {
+                opened = WriteBehindStore.open(appContext, PREF_NAME);
+                migrateSharedPreferences(appContext, opened.getStore());
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not open the store", e);
+                fail(e);
+                return;
+            }
+            Log.d(TAG, "Store ready in " + (System.nanoTime() - begin) / 1_000_000 + " ms");
+
+            ArrayList<Callback> callbacks;
+            synchronized (StorePreloader.class) {
+                store = opened;
+                callbacks = new ArrayList<>(waiting);
+                waiting.clear();
+            }
+            for (Callback callback : callbacks) {
+                mainHandler.post(() -> callback.onReady(opened));
+            }
+        }, "StorePreloader");
+        thread.start();
+    }
+
+    // Hands the error to every waiting callback and lets the next start() try again.
+    private static void fail(RuntimeException error) {
+        ArrayList<Callback> callbacks;
+        synchronized (StorePreloader.class) {
+            started = false;
+            callbacks = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        for (Callback callback : callbacks) {
+            mainHandler.post(() -> callback.onError(error));
+        }
+    }
+
+    // Calls back on the main thread once the store is open; immediately if it already is.
+    public static void whenReady(Context context, Callback callback) {
+        WriteBehindStore ready;
+        synchronized (StorePreloader.class) {
+            ready = store;
+            if (ready == null) {
+                waiting.add(callback);
+            }
+        }
+        if (ready == null) {
+            start(context);
+        } else if (Looper.myLooper() == Looper.getMainLooper()) {
+            callback.onReady(ready);
+        } else {
+            mainHandler.post(() -> callback.onReady(ready));
+        }
+    }
+
+    // Drops a callback passed to whenReady() that hasn't been called yet, so a
+    // destroyed activity isn't kept alive until the store opens.
+    public static synchronized void cancel(Callback callback) {
+        waiting.remove(callback);
+    }
+
+    // Moves values saved by older versions (SharedPreferences "mypref") into the store, once.
+    private static void migrateSharedPreferences(Context context, MappedKVStore target) {
+        File legacy = new File(context.getDataDir(), "shared_prefs/" + PREF_NAME + ".xml");
+        if (legacy.exists()) {
+            SharedPreferences sharedpreferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+            target.importFrom(sharedpreferences);
+            context.deleteSharedPreferences(PREF_NAME);
+        }
+    }
+}
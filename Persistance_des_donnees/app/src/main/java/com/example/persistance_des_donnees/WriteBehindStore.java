@@ -0,0 +1,180 @@
+package com.example.persistance_des_donnees;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Write-behind layer over MappedKVStore. Puts are held in memory for a short
+// window, so repeated writes to the same key collapse into one, then written in
+// batches on a background thread. Reads see pending values first. Flushing
+// never blocks the caller, so lifecycle callbacks stay cheap.
+public class WriteBehindStore {
+    public static final long DEFAULT_WINDOW_MS = 200;
+    // Upper bound on records written per flush pass, so one pass can't stall the writer thread.
+    private static final int MAX_BATCH = 256;
+
+    private static final Object REMOVED = new Object();
+    private static final HashMap<MappedKVStore, WriteBehindStore> instances = new HashMap<>();
+
+    public static WriteBehindStore open(Context context, String name) {
+        MappedKVStore store = MappedKVStore.open(context, name);
+        synchronized (instances) {
+            WriteBehindStore writeBehind = instances.get(store);
+            if (writeBehind == null) {
+                writeBehind = new WriteBehindStore(store, DEFAULT_WINDOW_MS);
+                instances.put(store, writeBehind);
+            }
+            return writeBehind;
+        }
+    }
+
+    private final MappedKVStore store;
+    private final long windowMs;
+    private final ConcurrentHashMap<String, Object> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+    private boolean flushScheduled;
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public WriteBehindStore(MappedKVStore store, long windowMs) {
+        this.store = store;
+        this.windowMs = windowMs;
+    }
+
+    public MappedKVStore getStore() {
+        return store;
+    }
+
+    public boolean contains(String key) {
+        Object value = pending.get(key);
+        if (value != null) {
+            return value != REMOVED;
+        }
+        return store.contains(key);
+    }
+
+    public String getString(String key, String defValue) {
+        Object value = pending.get(key);
+        if (value == null) {
+            return store.getString(key, defValue);
+        }
+        return value instanceof String ? (String) value : defValue;
+    }
+
+    public void putString(String key, String value) {
+        enqueue(key, value == null ? REMOVED : value);
+    }
+
+    public void remove(String key) {
+        enqueue(key, REMOVED);
+    }
+
+    private void enqueue(String key, Object value) {
+        requested.incrementAndGet();
+        if (pending.put(key, value) != null) {
+            coalesced.incrementAndGet();
+        }
+        synchronized (this) {
+            if (!flushScheduled) {
+                flushScheduled = true;
+                writer.schedule(this::flushPending, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // Starts writing everything pending now, without waiting for the window. Returns immediately.
+    public void flushAsync() {
+        synchronized (this) {
+            flushScheduled = true;
+        }
+        writer.execute(this::flushPending);
+    }
+
+    // Writes everything pending and waits until it is in the store. Blocks, so not
+    // for the main thread; meant for shutdown, tests and benchmarks.
+    public void flush() {
+        Future<?> done = writer.submit(() -> {
+            while (!pending.isEmpty()) {
+                flushPending();
+            }
+        });
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Flush failed", e.getCause());
+        }
+    }
+
+    // Flushes, stops the writer thread and closes the underlying store. The store
+    // must not be used afterwards.
+    public void close() throws IOException {
+        flush();
+        // Anything still scheduled is a flush of the now-empty pending map.
+        writer.shutdownNow();
+        synchronized (instances) {
+            instances.remove(store, this);
+        }
+        store.close();
+    }
+
+    private void flushPending() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+
+        int batch = 0;
+        Iterator<Map.Entry<String, Object>> it = pending.entrySet().iterator();
+        while (it.hasNext() && batch < MAX_BATCH) {
+            Map.Entry<String, Object> entry = it.next();
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == REMOVED) {
+                store.remove(key);
+            } else {
+                store.putString(key, (String) value);
+            }
+            // Only drop the entry if nobody replaced it while we were writing.
+            pending.remove(key, value);
+            written.incrementAndGet();
+            batch++;
+        }
+
+        if (!pending.isEmpty()) {
+            synchronized (this) {
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    writer.execute(this::flushPending);
+                }
+            }
+        }
+    }
+
+    // Total put/remove calls received.
+    public long getRequestedCount() {
+        return requested.get();
+    }
+
+    // Calls that replaced a still-pending value for the same key and so never hit storage.
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    // Records actually written to the underlying store.
+    public long getWrittenCount() {
+        return written.get();
+    }
+}
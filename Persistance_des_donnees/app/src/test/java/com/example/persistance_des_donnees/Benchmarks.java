@@ -0,0 +1,167 @@
+package com.example.persistance_des_donnees;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shared plumbing for this module's host-JVM benchmarks. They call
+ * {@link #assumeEnabled()} first, so they are skipped unless Gradle runs with
+ * -Pbenchmark, e.g.
+ * ./gradlew :app:testDebugUnitTest --tests '*Benchmark' -Pbenchmark
+ * Each measurement is printed and kept as a record; {@link #writeJson(String)}
+ * writes them all to build/reports/benchmark/&lt;name&gt;.json.
+ * <p>
+ * Each app in this repository is a standalone Gradle project with no shared
+ * test module, so every app keeps its own copy of this class. Keep the copies
+ * identical apart from the package.
+ */
+final class Benchmarks {
+
+    interface Op {
+        void run(int i) throws Exception;
+    }
+
+    /** One result row: labels first, then the measured values. */
+    static final class Record {
+        final LinkedHashMap<String, Object> fields = new LinkedHashMap<>();
+
+        Record put(String key, Object value) {
+            fields.put(key, value);
+            return this;
+        }
+    }
+
+    private final ArrayList<Record> records = new ArrayList<>();
+
+    static void assumeEnabled() {
+        assumeTrue("run with -Pbenchmark", Boolean.getBoolean("benchmark"));
+    }
+
+    /**
+     * Run {@code body} {@code ops} times untimed, so the JIT has compiled it
+     * before it is measured.
+     */
+    void warmUp(int ops, Op body) throws Exception {
+        for (int i = 0; i < ops; i++) {
+            body.run(i);
+        }
+    }
+
+    /**
+     * Run {@code body} {@code warmupOps} times untimed (see {@link #warmUp}),
+     * then {@code ops} times timed, on the calling thread.
+     *
+     * @param labels Alternating names and values identifying the measurement
+     * @return The record, with ops, nsPerOp and bytesPerOp (allocated by this thread)
+     */
+    Record measure(int warmupOps, int ops, Op body, Object... labels) throws Exception {
+        warmUp(warmupOps, body);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            body.run(i);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        Record record = record(labels);
+        String label = describe(record);
+        double nanosPerOp = (double) elapsedNanos / ops;
+        double bytesPerOp = (double) allocated / ops;
+        record.put("ops", ops).put("nsPerOp", nanosPerOp).put("bytesPerOp", bytesPerOp);
+        System.out.println(String.format(Locale.ROOT, "%-50s %12.1f us/op %12.0f B/op",
+                label, nanosPerOp / 1000, bytesPerOp));
+        return record;
+    }
+
+    /**
+     * Add a record for a value measured by the caller.
+     *
+     * @param labels Alternating names and values
+     */
+    Record record(Object... labels) {
+        Record record = new Record();
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            record.put((String) labels[i], labels[i + 1]);
+        }
+        records.add(record);
+        return record;
+    }
+
+    /**
+     * Write every record to {@code <benchmark.output>/<name>.json}, if the
+     * output directory is set.
+     */
+    void writeJson(String name) throws IOException {
+        String dir = System.getProperty("benchmark.output");
+        if (dir == null) {
+            return;
+        }
+        File out = new File(dir, name + ".json");
+        out.getParentFile().mkdirs();
+        try (Writer writer = new FileWriter(out)) {
+            writer.write("[\n");
+            for (int i = 0; i < records.size(); i++) {
+                writer.write("  {");
+                String separator = "";
+                for (Map.Entry<String, Object> field : records.get(i).fields.entrySet()) {
+                    writer.write(separator + quote(field.getKey()) + ": " + toJson(field.getValue()));
+                    separator = ", ";
+                }
+                writer.write(i + 1 < records.size() ? "},\n" : "}\n");
+            }
+            writer.write("]\n");
+        }
+        System.out.println("Wrote " + out);
+    }
+
+    private static String describe(Record record) {
+        StringBuilder line = new StringBuilder();
+        for (Object value : record.fields.values()) {
+            if (line.length() > 0) {
+                line.append(' ');
+            }
+            line.append(value);
+        }
+        return line.toString();
+    }
+
+    private static String toJson(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return Double.isFinite(d) ? String.format(Locale.ROOT, "%.1f", d) : "null";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        return value == null ? "null" : quote(value.toString());
+    }
+
+    private static String quote(String s) {
+        StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.persistance_des_donnees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+
+/**
+ * Two MappedKVStore instances on one file stand in for two processes: each has
+ * its own mapping, lock channel and in-memory view, and only sees the other's
+ * writes through the shared header, exactly as a second process would.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MappedKVStoreSharingTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // MappedKVStore's marker for a file replaced by compaction.
+    private static final int RETIRED_MAGIC = 0x4b565330;
+
+    private File file;
+    private MappedKVStore first;
+    private MappedKVStore second;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "shared.kvs");
+        first = new MappedKVStore(file);
+        second = new MappedKVStore(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void writesAreSeenByTheOtherInstance() {
+        first.putString("name", "Ada");
+        assertEquals("Ada", second.getString("name", null));
+
+        second.putInt("count", 3);
+        second.remove("name");
+        assertEquals(3, first.getInt("count", 0));
+        assertFalse(first.contains("name"));
+    }
+
+    @Test
+    public void interleavedWritesAreAllKept() {
+        for (int i = 0; i < 100; i++) {
+            (i % 2 == 0 ? first : second).putInt("key" + i, i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, first.getInt("key" + i, -1));
+            assertEquals(i, second.getInt("key" + i, -1));
+        }
+    }
+
+    @Test
+    public void clearIsSeenByTheOtherInstance() {
+        first.putString("a", "1");
+        assertTrue(second.contains("a"));
+        second.clear();
+        assertTrue(first.getAll().isEmpty());
+    }
+
+    @Test
+    public void otherInstanceReopensAfterCompaction() {
+        for (int i = 0; i < 500; i++) {
+            first.putString("key" + (i % 5), "value" + i);
+        }
+        assertEquals("value499", second.getString("key4", null));
+
+        first.compact();
+        assertEquals("value499", second.getString("key4", null));
+
+        // Both keep writing to the compacted file.
+        second.putString("key0", "from second");
+        first.putString("key1", "from first");
+        assertEquals("from second", first.getString("key0", null));
+        assertEquals("from first", second.getString("key1", null));
+        assertEquals(5, second.getAll().size());
+    }
+
+    @Test
+    public void listenerIsNotifiedOfTheOtherInstancesWrites() {
+        ArrayList<String> changed = new ArrayList<>();
+        first.registerListener("name", (store, key) -> changed.add(key));
+
+        second.putString("name", "Ada");
+        second.putString("ignored", "x");
+        // Reads pick up the other instance's records, as the periodic watcher would.
+        first.contains("name");
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertEquals(1, changed.size());
+        assertEquals("name", changed.get(0));
+    }
+
+    @Test
+    public void failedCatchUpReleasesTheWriteLock() throws IOException {
+        first.putString("a", "1");
+        // Mark the file retired, as a compaction elsewhere would, but leave nothing
+        // re-openable behind it so the next writer's catch-up fails.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(RETIRED_MAGIC);
+        }
+        assertTrue(file.delete());
+        assertTrue(file.mkdir());
+
+        assertThrows(IllegalStateException.class, () -> first.putString("b", "2"));
+
+        try (FileChannel channel = new RandomAccessFile(file.getPath() + ".lock", "rw").getChannel()) {
+            FileLock lock = channel.tryLock();
+            assertNotNull("write lock still held after the failure", lock);
+            lock.release();
+        }
+    }
+}
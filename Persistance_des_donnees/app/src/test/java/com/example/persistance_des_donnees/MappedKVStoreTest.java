@@ -0,0 +1,188 @@
+package com.example.persistance_des_donnees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Recovery and compaction behaviour of MappedKVStore's record log. Offsets below
+ * follow the file layout documented on the class: a 16 byte header whose third
+ * int is the end offset, then [crc32][length][payload] records.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class MappedKVStoreTest {
+    private static final int HEADER_SIZE = 16;
+    private static final int END_OFFSET_POS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "test.kvs");
+    }
+
+    @Test
+    public void valuesSurviveReopen() throws IOException {
+        MappedKVStore store = new MappedKVStore(file);
+        store.putString("s", "text");
+        store.putInt("i", 42);
+        store.putLong("l", 1L << 40);
+        store.putFloat("f", 1.5f);
+        store.putBoolean("b", true);
+        store.putString("gone", "x");
+        store.remove("gone");
+        store.close();
+
+        MappedKVStore reopened = new MappedKVStore(file);
+        assertEquals("text", reopened.getString("s", null));
+        assertEquals(42, reopened.getInt("i", 0));
+        assertEquals(1L << 40, reopened.getLong("l", 0));
+        assertEquals(1.5f, reopened.getFloat("f", 0), 0f);
+        assertTrue(reopened.getBoolean("b", false));
+        assertFalse(reopened.contains("gone"));
+        reopened.close();
+    }
+
+    @Test
+    public void clearSurvivesReopen() throws IOException {
+        MappedKVStore store = new MappedKVStore(file);
+        store.putString("a", "1");
+        store.clear();
+        store.putString("b", "2");
+        store.close();
+
+        MappedKVStore reopened = new MappedKVStore(file);
+        assertFalse(reopened.contains("a"));
+        assertEquals("2", reopened.getString("b", null));
+        reopened.close();
+    }
+
+    @Test
+    public void tornTailIsTruncatedAndPrefixSurvives() throws IOException {
+        MappedKVStore store = new MappedKVStore(file);
+        store.putString("a", "1");
+        store.putString("b", "2");
+        int endBeforeLast = readEnd();
+        store.putString("c", "a value long enough to be cut in half");
+        store.close();
+
+        // Simulate a crash in the middle of writing the last record.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(endBeforeLast + 12);
+        }
+
+        MappedKVStore reopened = new MappedKVStore(file);
+        assertEquals("1", reopened.getString("a", null));
+        assertEquals("2", reopened.getString("b", null));
+        assertFalse(reopened.contains("c"));
+        assertEquals(endBeforeLast, readEnd());
+
+        // New writes go where the torn record was and are readable after another reopen.
+        reopened.putString("d", "4");
+        reopened.close();
+        MappedKVStore again = new MappedKVStore(file);
+        assertEquals("4", again.getString("d", null));
+        assertFalse(again.contains("c"));
+        again.close();
+    }
+
+    @Test
+    public void recordWithBadChecksumIsDropped() throws IOException {
+        MappedKVStore store = new MappedKVStore(file);
+        store.putString("a", "1");
+        int endBeforeLast = readEnd();
+        store.putString("b", "2");
+        store.close();
+
+        // Flip a byte in the last record's payload, past its crc and length.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long pos = endBeforeLast + 8 + 3;
+            raf.seek(pos);
+            int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0xff);
+        }
+
+        MappedKVStore reopened = new MappedKVStore(file);
+        assertEquals("1", reopened.getString("a", null));
+        assertFalse(reopened.contains("b"));
+        assertEquals(endBeforeLast, readEnd());
+        reopened.close();
+    }
+
+    @Test
+    public void corruptHugeLengthIsTruncatedNotAllocated() throws IOException {
+        MappedKVStore store = new MappedKVStore(file);
+        store.putString("a", "1");
+        int end = readEnd();
+        store.close();
+
+        // A record header claiming ~2 GB, with the end offset pointing past it.
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(end);
+            raf.writeInt(0);
+            raf.writeInt(Integer.MAX_VALUE - 4);
+            raf.seek(END_OFFSET_POS);
+            raf.writeInt(end + 16);
+        }
+
+        MappedKVStore reopened = new MappedKVStore(file);
+        assertEquals("1", reopened.getString("a", null));
+        assertEquals(end, readEnd());
+        reopened.close();
+    }
+
+    @Test
+    public void compactionKeepsOnlyLiveValues() throws IOException {
+        MappedKVStore store = new MappedKVStore(file);
+        for (int i = 0; i < 2000; i++) {
+            store.putString("key" + (i % 10), "value" + i);
+        }
+        store.putString("removed", "x");
+        store.remove("removed");
+        int endBefore = readEnd();
+
+        store.compact();
+        int endAfter = readEnd();
+        assertTrue("log should shrink, was " + endBefore + " now " + endAfter, endAfter < endBefore / 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value" + (1990 + i), store.getString("key" + i, null));
+        }
+
+        // The compacted file takes appends and reopens to the same contents.
+        store.putString("after", "compaction");
+        store.close();
+        MappedKVStore reopened = new MappedKVStore(file);
+        assertEquals("value1999", reopened.getString("key9", null));
+        assertEquals("compaction", reopened.getString("after", null));
+        assertNull(reopened.getString("removed", null));
+        assertEquals(11, reopened.getAll().size());
+        reopened.close();
+    }
+
+    private int readEnd() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(END_OFFSET_POS);
+            int end = raf.readInt();
+            assertTrue(end >= HEADER_SIZE);
+            return end;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.persistance_des_donnees;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+/**
+ * Compares preference backends on the host JVM: SharedPreferences against
+ * MappedKVStore and WriteBehindStore, at several key counts. Every backend is
+ * timed on the same operations:
+ * get, put (returns before the write is durable: apply / append / enqueue),
+ * commit (put made durable: commit / append + sync / enqueue + flush + sync)
+ * and cold-load (open the file and read one key).
+ *
+ * See {@link Benchmarks} for how to run it; results go to preferences.json.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class PreferencesBenchmark {
+    private static final String DEFAULT_SIZES = "10,1000,100000";
+    // Single-key operations timed per store size; the store itself is filled in bulk.
+    private static final int MAX_OPS = 1000;
+    // Run before each single-key measurement; keys wrap, so small stores get the full warmup.
+    private static final int WARMUP_OPS = 1000;
+
+    private Context context;
+    private final Benchmarks benchmarks = new Benchmarks();
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        for (String size : System.getProperty("benchmark.sizes", DEFAULT_SIZES).split(",")) {
+            int keys = Integer.parseInt(size.trim());
+            benchmarkSharedPreferences(keys);
+            benchmarkMappedStore(keys);
+            benchmarkWriteBehind(keys);
+        }
+        benchmarks.writeJson("preferences");
+    }
+
+    private void benchmarkSharedPreferences(int keys) throws Exception {
+        String name = "bench_sp_" + keys;
+        SharedPreferences prefs = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+        SharedPreferences.Editor fill = prefs.edit();
+        for (int i = 0; i < keys; i++) {
+            fill.putString("key" + i, "value" + i);
+        }
+        fill.commit();
+
+        String backend = "SharedPreferences";
+        int ops = Math.min(keys, MAX_OPS);
+        Random random = new Random(42);
+        measure(backend, "get", keys, WARMUP_OPS, ops, i -> prefs.getString("key" + random.nextInt(keys), null));
+        measure(backend, "put", keys, WARMUP_OPS, ops, i -> prefs.edit().putString("key" + (i % keys), "put" + i).apply());
+        measure(backend, "commit", keys, WARMUP_OPS, ops, i -> prefs.edit().putString("key" + (i % keys), "commit" + i).commit());
+
+        Method reload = findReloadMethod();
+        if (reload != null) {
+            measure(backend, "cold-load", keys, 1, 1, i -> {
+                reload.invoke(baseContext());
+                context.getSharedPreferences(name, Context.MODE_PRIVATE).getString("key0", null);
+            });
+        }
+        context.deleteSharedPreferences(name);
+    }
+
+    private void benchmarkMappedStore(int keys) throws Exception {
+        File file = new File(context.getFilesDir(), "bench_kv_" + keys + ".kvs");
+        deleteStore(file);
+        MappedKVStore store = new MappedKVStore(file);
+        for (int i = 0; i < keys; i++) {
+            store.putString("key" + i, "value" + i);
+        }
+
+        String backend = "MappedKVStore";
+        int ops = Math.min(keys, MAX_OPS);
+        Random random = new Random(42);
+        measure(backend, "get", keys, WARMUP_OPS, ops, i -> store.getString("key" + random.nextInt(keys), null));
+        measure(backend, "put", keys, WARMUP_OPS, ops, i -> store.putString("key" + (i % keys), "put" + i));
+        measure(backend, "commit", keys, WARMUP_OPS, ops, i -> {
+            store.putString("key" + (i % keys), "commit" + i);
+            store.sync();
+        });
+        // Waits for any compaction the puts started, and frees the lock, before reopening.
+        store.close();
+
+        measure(backend, "cold-load", keys, 1, 1, i -> {
+            MappedKVStore loaded = new MappedKVStore(file);
+            loaded.getString("key0", null);
+            loaded.close();
+        });
+        deleteStore(file);
+    }
+
+    private void benchmarkWriteBehind(int keys) throws Exception {
+        File file = new File(context.getFilesDir(), "bench_wb_" + keys + ".kvs");
+        deleteStore(file);
+        WriteBehindStore store = new WriteBehindStore(new MappedKVStore(file), WriteBehindStore.DEFAULT_WINDOW_MS);
+        for (int i = 0; i < keys; i++) {
+            store.putString("key" + i, "value" + i);
+        }
+        store.flush();
+
+        String backend = "WriteBehindStore";
+        int ops = Math.min(keys, MAX_OPS);
+        Random random = new Random(42);
+        measure(backend, "get", keys, WARMUP_OPS, ops, i -> store.getString("key" + random.nextInt(keys), null));
+        Benchmarks.Op put = i -> store.putString("key" + (i % keys), "put" + i);
+        // Warmed up here rather than in measure() so the counters only cover the timed puts.
+        benchmarks.warmUp(WARMUP_OPS, put);
+        long requestedBefore = store.getRequestedCount();
+        long coalescedBefore = store.getCoalescedCount();
+        measure(backend, "put", keys, 0, ops, put)
+                .put("requested", store.getRequestedCount() - requestedBefore)
+                .put("coalesced", store.getCoalescedCount() - coalescedBefore);
+        measure(backend, "commit", keys, WARMUP_OPS, ops, i -> {
+            store.putString("key" + (i % keys), "commit" + i);
+            store.flush();
+            store.getStore().sync();
+        });
+        store.close();
+
+        measure(backend, "cold-load", keys, 1, 1, i -> {
+            WriteBehindStore loaded = new WriteBehindStore(new MappedKVStore(file), WriteBehindStore.DEFAULT_WINDOW_MS);
+            loaded.getString("key0", null);
+            loaded.close();
+        });
+        deleteStore(file);
+    }
+
+    private Benchmarks.Record measure(String backend, String op, int keys, int warmupOps, int ops,
+                                      Benchmarks.Op body) throws Exception {
+        return benchmarks.measure(warmupOps, ops, body, "backend", backend, "op", op, "keys", keys);
+    }
+
+    private static void deleteStore(File file) {
+        file.delete();
+        new File(file.getPath() + ".lock").delete();
+    }
+
+    // ContextImpl.reloadSharedPreferences() is hidden but drops the in-memory cache,
+    // which is the only way to time a real cold load of SharedPreferences.
+    private Method findReloadMethod() {
+        try {
+            Method method = baseContext().getClass().getDeclaredMethod("reloadSharedPreferences");
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException e) {
+            System.out.println("SharedPreferences cold-load skipped: " + e);
+            return null;
+        }
+    }
+
+    private Context baseContext() {
+        Context base = context;
+        while (base instanceof ContextWrapper) {
+            base = ((ContextWrapper) base).getBaseContext();
+        }
+        return base;
+    }
+}
@@ -33,6 +33,20 @@ android {
     kotlinOptions {
         jvmTarget = "11"
     }
+    testOptions {
+        unitTests {
+            isIncludeAndroidResources = true
+            all {
+                // ./gradlew :app:testDebugUnitTest -Pbenchmark [-Pbenchmark.sizes=1000,100000]
+                it.systemProperty("benchmark", project.hasProperty("benchmark"))
+                it.systemProperty("benchmark.output", project.layout.buildDirectory.dir("reports/benchmark").get().asFile.path)
+                project.findProperty("benchmark.sizes")?.let { sizes ->
+                    it.systemProperty("benchmark.sizes", sizes)
+                }
+                it.maxHeapSize = "2g"
+            }
+        }
+    }
 }
 
 dependencies {
@@ -43,6 +57,8 @@ dependencies {
     implementation(libs.androidx.activity)
     implementation(libs.androidx.constraintlayout)
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.junit)
     androidTestImplementation(libs.androidx.espresso.core)
 }
\ No newline at end of file
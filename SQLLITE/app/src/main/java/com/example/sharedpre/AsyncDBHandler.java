@@ -0,0 +1,168 @@
+package com.example.sharedpre;
+
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Runs DBHandler calls off the main thread: writes go through a single serial
+// writer, reads through a small pool (the database is in WAL mode so readers
+// don't block on the writer). Results and change events are posted back to the
+// main thread.
+public class AsyncDBHandler {
+    private static final String TAG = "AsyncDBHandler";
+    private static final int READER_THREADS = 2;
+
+    public interface Callback<T> {
+        void onResult(T result);
+
+        default void onError(Exception e) {
+            Log.e(TAG, "Database operation failed", e);
+        }
+    }
+
+    private final DBHandler dbHandler;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private final ExecutorService readers = Executors.newFixedThreadPool(READER_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final HashMap<DBHandler.UserChangeListener, DBHandler.UserChangeListener> listeners = new HashMap<>();
+    private volatile boolean shutDown;
+
+    public AsyncDBHandler(DBHandler dbHandler) {
+        this.dbHandler = dbHandler;
+        writer.execute(this::continueBackfill);
+    }
+
+    public DBHandler getDbHandler() {
+        return dbHandler;
+    }
+
+    public <T> Future<T> read(Callable<T> task, @Nullable Callback<T> callback) {
+        return readers.submit(wrap(task, callback));
+    }
+
+    public <T> Future<T> write(Callable<T> task, @Nullable Callback<T> callback) {
+        return writer.submit(wrap(task, callback));
+    }
+
+    private <T> Callable<T> wrap(Callable<T> task, @Nullable Callback<T> callback) {
+        return () -> {
+            try {
+                T result = task.call();
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onResult(result));
+                }
+                return result;
+            } catch (Exception e) {
+                if (callback != null) {
+                    mainHandler.post(() -> callback.onError(e));
+                } else {
+                    Log.e(TAG, "Database operation failed", e);
+                }
+                throw e;
+            }
+        };
+    }
+
+    public Future<Long> addNewUser(String name, @Nullable Callback<Long> callback) {
+        return write(() -> dbHandler.addNewUser(name), callback);
+    }
+
+    public Future<Integer> addNewUsers(Collection<String> names, @Nullable Callback<Integer> callback) {
+        return write(() -> dbHandler.addNewUsers(names), callback);
+    }
+
+    public Future<Void> updateUser(long id, String name, @Nullable Callback<Void> callback) {
+        return write(() -> {
+            dbHandler.updateUser(id, name);
+            return null;
+        }, callback);
+    }
+
+    public Future<Void> deleteUser(long id, @Nullable Callback<Void> callback) {
+        return write(() -> {
+            dbHandler.deleteUser(id);
+            return null;
+        }, callback);
+    }
+
+    public Future<String> getUser(long id, @Nullable Callback<String> callback) {
+        return read(() -> dbHandler.getUser(id), callback);
+    }
+
+    public Future<UserList> viewPage(long afterId, int limit, @Nullable Callback<UserList> callback) {
+        return read(() -> readPage(dbHandler.viewPage(afterId, limit)), callback);
+    }
+
+    public Future<UserList> searchUsers(String prefix, int limit, @Nullable Callback<UserList> callback) {
+        return read(() -> readPage(dbHandler.searchUsers(prefix, limit)), callback);
+    }
+
+    private static UserList readPage(Cursor cursor) {
+        UserList page = new UserList(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                page.add(cursor.getLong(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return page;
+    }
+
+    // Change events are raised on the writer thread; re-deliver them on the main thread.
+    public void addUserChangeListener(DBHandler.UserChangeListener listener) {
+        DBHandler.UserChangeListener wrapper = (op, id, name) ->
+                mainHandler.post(() -> listener.onUserChanged(op, id, name));
+        listeners.put(listener, wrapper);
+        dbHandler.addUserChangeListener(wrapper);
+    }
+
+    public void removeUserChangeListener(DBHandler.UserChangeListener listener) {
+        DBHandler.UserChangeListener wrapper = listeners.remove(listener);
+        if (wrapper != null) {
+            dbHandler.removeUserChangeListener(wrapper);
+        }
+    }
+
+    // Copies one batch of any row copies a migration left behind, then queues the
+    // next one behind whatever writes arrived meanwhile.
+    private void continueBackfill() {
+        if (shutDown) {
+            return;
+        }
+        try {
+            if (dbHandler.runBackfillBatch() && !shutDown) {
+                writer.execute(this::continueBackfill);
+            }
+        } catch (RuntimeException e) {
+            // The state row still says where it stopped; the next start carries on.
+            Log.e(TAG, "Backfill failed", e);
+        }
+    }
+
+    // Lets queued work finish, then closes the database on the writer thread.
+    public void shutdown() {
+        shutDown = true;
+        readers.shutdown();
+        writer.execute(() -> {
+            try {
+                readers.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dbHandler.close();
+        });
+        writer.shutdown();
+    }
+}
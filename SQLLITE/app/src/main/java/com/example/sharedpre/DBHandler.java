@@ -6,22 +6,55 @@ import android.database.Cursor;
 import android.database.DatabaseErrorHandler;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class DBHandler extends SQLiteOpenHelper {
+    private static final String TAG = "DBHandler";
     private static final String DB_NAME = "usersdb";
-    private static final int DB_VERSION = 1;
+    private static final int DB_VERSION = 2;
     private static final String TABLE_NAME = "users";
+    private static final String FTS_TABLE_NAME = "users_fts";
 
     private static final String ID_COL = "id";
 
     private static final String NAME_COL = "name";
 
+    public static final int OP_INSERT = 0;
+    public static final int OP_UPDATE = 1;
+    public static final int OP_DELETE = 2;
+
+    // Notified after each row written through this handler, with the affected id.
+    public interface UserChangeListener {
+        void onUserChanged(int op, long id, @Nullable String name);
+    }
+
+    private static final int USER_CACHE_SIZE = 512;
+
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE_NAME + " (" + NAME_COL + ") VALUES (?)";
+    private static final String UPDATE_SQL = "UPDATE " + TABLE_NAME + " SET " + NAME_COL + " = ? WHERE " + ID_COL + " = ?";
+    private static final String DELETE_SQL = "DELETE FROM " + TABLE_NAME + " WHERE " + ID_COL + " = ?";
+
+    private final CopyOnWriteArrayList<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Names by id; written through on insert and update, filled on read misses, invalidated on delete.
+    private final LongLruCache<String> userCache = new LongLruCache<>(USER_CACHE_SIZE);
+    // Runs in getUser between the read and the cache fill; lets tests interleave a write there.
+    @VisibleForTesting
+    @Nullable
+    Runnable beforeUserCacheFill;
+    private final QueryStats stats = new QueryStats();
 
     public DBHandler(Context context) {
         super(context, DB_NAME, null, DB_VERSION);
+        // Lets readers run alongside the single writer used by AsyncDBHandler.
+        setWriteAheadLoggingEnabled(true);
     }
 
 
@@ -32,45 +65,294 @@ public class DBHandler extends SQLiteOpenHelper {
                 + NAME_COL + " TEXT)" ;
 
         db.execSQL(query);
+        createSearchIndex(db);
 
         db.execSQL("INSERT INTO " +TABLE_NAME  + "(name) VALUES ('Mostapha')");
 
 
     }
 
+    // External-content FTS4 index over users.name, kept in sync by triggers.
+    // While SEARCH_BACKFILL is still copying, rows it has not reached are not in
+    // the index yet, so updates and deletes leave their index entries alone;
+    // the backfill picks up their current values when it gets there.
+    private void createSearchIndex(SQLiteDatabase db) {
+        Migration.createStateTable(db);
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + FTS_TABLE_NAME
+                + " USING fts4(content=\"" + TABLE_NAME + "\", " + NAME_COL + ")");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_ai AFTER INSERT ON " + TABLE_NAME + " BEGIN "
+                + "INSERT INTO " + FTS_TABLE_NAME + "(docid, " + NAME_COL + ") VALUES (new." + ID_COL + ", new." + NAME_COL + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_bu BEFORE UPDATE ON " + TABLE_NAME
+                + " WHEN " + indexed("old") + " BEGIN "
+                + "DELETE FROM " + FTS_TABLE_NAME + " WHERE docid = old." + ID_COL + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_au AFTER UPDATE ON " + TABLE_NAME
+                + " WHEN " + indexed("new") + " BEGIN "
+                + "INSERT INTO " + FTS_TABLE_NAME + "(docid, " + NAME_COL + ") VALUES (new." + ID_COL + ", new." + NAME_COL + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_bd BEFORE DELETE ON " + TABLE_NAME
+                + " WHEN " + indexed("old") + " BEGIN "
+                + "DELETE FROM " + FTS_TABLE_NAME + " WHERE docid = old." + ID_COL + "; END");
+    }
+
+    // Trigger condition: the row is outside the part SEARCH_BACKFILL has yet to copy.
+    // New rows always pass, as AUTOINCREMENT ids are above the backfill's end.
+    private static String indexed(String row) {
+        return "NOT EXISTS (SELECT 1 FROM " + Migration.STATE_TABLE
+                + " WHERE name = '" + FTS_TABLE_NAME + "'"
+                + " AND " + row + "." + ID_COL + " > last_key AND " + row + "." + ID_COL + " <= end_key)";
+    }
+
+    private static final Migration.Backfill SEARCH_BACKFILL = new Migration.Backfill(FTS_TABLE_NAME,
+            FTS_TABLE_NAME, "docid, " + NAME_COL,
+            TABLE_NAME, ID_COL + ", " + NAME_COL, ID_COL,
+            Migration.DEFAULT_BATCH_SIZE);
+
+    // Row copies left behind by migrations; runBackfillBatch works through them in order.
+    private static final Migration.Backfill[] BACKFILLS = {SEARCH_BACKFILL};
+
+    // Schema steps by target version; onUpgrade applies those above the old version in order.
+    private final Migration[] migrations = {
+            new Migration(2) {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    db.execSQL("DROP TABLE IF EXISTS " + FTS_TABLE_NAME);
+                    createSearchIndex(db);
+                    SEARCH_BACKFILL.schedule(db);
+                }
+            },
+    };
+
+    @Nullable
+    private volatile Migration.ProgressListener migrationListener;
+
+    // Receives row-copy progress from runBackfillBatch.
+    public void setMigrationListener(@Nullable Migration.ProgressListener listener) {
+        migrationListener = listener;
+    }
+
+    // Copies one batch of whatever row copies migrations left to do, in its own
+    // transaction. Returns false once they are all done; search results are
+    // incomplete until then. AsyncDBHandler calls it on its writer thread after open.
+    public boolean runBackfillBatch() {
+        SQLiteDatabase db = getWritableDatabase();
+        for (Migration.Backfill backfill : BACKFILLS) {
+            if (backfill.runBatch(db, migrationListener)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    public void addUserChangeListener(UserChangeListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeUserChangeListener(UserChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyChange(int op, long id, @Nullable String name) {
+        for (UserChangeListener listener : listeners) {
+            listener.onUserChanged(op, id, name);
+        }
+    }
 
-    public void addNewUser(String name){
+    // Latency histograms and slow-query log for every operation below.
+    public QueryStats getQueryStats() {
+        return stats;
+    }
+
+    public long addNewUser(String name){
+        long start = QueryStats.start();
         SQLiteDatabase db =this.getWritableDatabase();
         ContentValues content=new ContentValues();
         content.put(NAME_COL,name);
-        db.insert(TABLE_NAME,null,content);
-        db.close();
+        long id = db.insert(TABLE_NAME,null,content);
+        stats.record("addNewUser", start, id != -1 ? 1 : 0, db, INSERT_SQL, new String[]{name});
+        if (id != -1) {
+            userCache.put(id, name);
+            notifyChange(OP_INSERT, id, name);
+        }
+        return id;
+    }
+
+    // Inserts all names in a single transaction, reusing one compiled statement.
+    // Returns the number of rows inserted; the insert rate is kept in
+    // getQueryStats().rowsPerSecond("addNewUsers").
+    public int addNewUsers(Collection<String> names) {
+        if (names.isEmpty()) {
+            return 0;
+        }
+
+        long statsStart = QueryStats.start();
+        int inserted = 0;
+        long[] newIds = new long[names.size()];
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(INSERT_SQL);
+        int i = 0;
+        db.beginTransaction();
+        try {
+            for (String name : names) {
+                statement.bindString(1, name);
+                long id = statement.executeInsert();
+                newIds[i++] = id;
+                if (id != -1) {
+                    inserted++;
+                }
+                statement.clearBindings();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+        stats.record("addNewUsers", statsStart, inserted, null, null, null);
+
+        i = 0;
+        for (String name : names) {
+            long id = newIds[i++];
+            if (id != -1) {
+                userCache.put(id, name);
+                notifyChange(OP_INSERT, id, name);
+            }
+        }
+        return inserted;
     }
 
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-db.execSQL("DROP TABLE IF EXISTS "+TABLE_NAME);
+        for (Migration migration : migrations) {
+            if (migration.version > oldVersion && migration.version <= newVersion) {
+                Log.i(TAG, "Migrating " + DB_NAME + " to v" + migration.version);
+                migration.migrate(db);
+            }
+        }
     }
 
     public Cursor viewData(){
-
+        long start = QueryStats.start();
         SQLiteDatabase db = this.getReadableDatabase();
         String query = "Select * from " + TABLE_NAME;
         Cursor cursor = db.rawQuery(query, null);
+        // Unbounded, so don't force a full count just for the stats: the query runs
+        // lazily as the caller reads, and only preparing it is timed. Rows go in as 0.
+        stats.record("viewData", start, 0, db, query, null);
+        return cursor;
+    }
+
+    // Name of the user with this id, or null if there is none. Served from the
+    // row cache when possible.
+    @Nullable
+    public String getUser(long id) {
+        String name = userCache.get(id);
+        if (name != null) {
+            return name;
+        }
+
+        // Taken before the read: if a writer updates the cache after we read an
+        // older row, the fill below is dropped instead of undoing its update.
+        long generation = userCache.generation();
+        long start = QueryStats.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        String query = "SELECT " + NAME_COL + " FROM " + TABLE_NAME + " WHERE " + ID_COL + " = ?";
+        String[] args = {String.valueOf(id)};
+        Cursor cursor = db.rawQuery(query, args);
+        try {
+            if (cursor.moveToFirst()) {
+                name = cursor.getString(0);
+            }
+            stats.record("getUser", start, cursor.getCount(), db, query, args);
+        } finally {
+            cursor.close();
+        }
+        if (beforeUserCacheFill != null) {
+            beforeUserCacheFill.run();
+        }
+        if (name != null) {
+            userCache.putIfUnchanged(id, name, generation);
+        }
+        return name;
+    }
+
+    // Exposes hit/miss/eviction counters for sizing.
+    public LongLruCache<String> getUserCache() {
+        return userCache;
+    }
+
+    // Keyset pagination: returns up to `limit` rows with id greater than `afterId`, ordered by id.
+    public Cursor viewPage(long afterId, int limit) {
+        long start = QueryStats.start();
+        SQLiteDatabase db = this.getReadableDatabase();
+        String query = "SELECT " + ID_COL + ", " + NAME_COL + " FROM " + TABLE_NAME
+                + " WHERE " + ID_COL + " > ? ORDER BY " + ID_COL + " LIMIT " + limit;
+        String[] args = {String.valueOf(afterId)};
+        Cursor cursor = db.rawQuery(query, args);
+        // At most `limit` rows, which callers read straight away, so counting
+        // here costs nothing extra and the timing covers running the query.
+        stats.record("viewPage", start, cursor.getCount(), db, query, args);
+        return cursor;
+    }
+
+    // Prefix search on names through the FTS index. Each word of `prefix` must
+    // match the start of a word in the name.
+    public Cursor searchUsers(String prefix, int limit) {
+        long start = QueryStats.start();
+        StringBuilder match = new StringBuilder();
+        for (String token : prefix.trim().split("\\s+")) {
+            // Keep letters and digits only so user input can't inject FTS syntax.
+            String clean = token.replaceAll("[^\\p{L}\\p{N}]", "");
+            if (!clean.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(clean).append('*');
+            }
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        if (match.length() == 0) {
+            return db.rawQuery("SELECT " + ID_COL + ", " + NAME_COL + " FROM " + TABLE_NAME + " WHERE 0", null);
+        }
+        String query = "SELECT u." + ID_COL + ", u." + NAME_COL
+                + " FROM " + FTS_TABLE_NAME + " f JOIN " + TABLE_NAME + " u ON u." + ID_COL + " = f.docid"
+                + " WHERE " + FTS_TABLE_NAME + " MATCH ? ORDER BY u." + ID_COL + " LIMIT " + limit;
+        String[] args = {match.toString()};
+        Cursor cursor = db.rawQuery(query, args);
+        // Bounded by `limit` like viewPage, so the count is cheap.
+        stats.record("searchUsers", start, cursor.getCount(), db, query, args);
         return cursor;
     }
 
-    public void updateUser(int id, String name) {
+    public void updateUser(long id, String name) {
+        long start = QueryStats.start();
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues content = new ContentValues();
         content.put(NAME_COL, name);
-        db.update(TABLE_NAME, content, ID_COL + "=?", new String[]{String.valueOf(id)});
+        String[] whereArgs = {String.valueOf(id)};
+        int rows = db.update(TABLE_NAME, content, ID_COL + "=?", whereArgs);
+        stats.record("updateUser", start, rows, db, UPDATE_SQL, new String[]{name, whereArgs[0]});
+        // The update has committed; write through so the next read is a hit.
+        if (rows > 0) {
+            userCache.put(id, name);
+            notifyChange(OP_UPDATE, id, name);
+        } else {
+            userCache.remove(id);
+        }
     }
 
-    public void deleteUser(int id) {
+    public void deleteUser(long id) {
+        long start = QueryStats.start();
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_NAME, ID_COL + "=?", new String[]{String.valueOf(id)});
+        String[] whereArgs = {String.valueOf(id)};
+        int rows = db.delete(TABLE_NAME, ID_COL + "=?", whereArgs);
+        stats.record("deleteUser", start, rows, db, DELETE_SQL, whereArgs);
+        userCache.remove(id);
+        if (rows > 0) {
+            notifyChange(OP_DELETE, id, null);
+        }
     }
 
 
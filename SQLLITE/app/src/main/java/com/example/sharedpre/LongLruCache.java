@@ -0,0 +1,239 @@
+package com.example.sharedpre;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+// Bounded LRU cache keyed by primitive longs, so lookups don't box ids.
+// Entries live in parallel arrays linked into a recency list; an open-addressing
+// table maps keys to entry slots. All methods are synchronized.
+//
+// Readers that fill the cache from the database should take generation()
+// before reading and fill with putIfUnchanged(), so a value read before a
+// concurrent write can't be put back after the writer updated the cache.
+public class LongLruCache<V> {
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final long[] keys;
+    private final Object[] values;
+    private final int[] prev;
+    private final int[] next;
+    // Entry slot + 1 per bucket, 0 = empty.
+    private final int[] table;
+    private final int mask;
+
+    private int head = NONE; // most recently used
+    private int tail = NONE; // least recently used
+    private int freeHead = NONE;
+    private int nextUnused = 0;
+    private int size = 0;
+
+    // Bumped by every put, remove and clear.
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LongLruCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+
+        int buckets = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        table = new int[buckets];
+        mask = buckets - 1;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public synchronized V get(long key) {
+        int pos = find(key);
+        if (pos < 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        int entry = table[pos] - 1;
+        moveToFront(entry);
+        return (V) values[entry];
+    }
+
+    public synchronized void put(long key, V value) {
+        generation++;
+        insert(key, value);
+    }
+
+    // Current write generation, to pass to putIfUnchanged().
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // Puts only if nothing was put, removed or cleared since generation() returned
+    // `expectedGeneration`. Returns whether the value was stored. The check is
+    // cache-wide, not per key: a fill that lost the race is simply dropped.
+    public synchronized boolean putIfUnchanged(long key, V value, long expectedGeneration) {
+        if (generation != expectedGeneration) {
+            return false;
+        }
+        insert(key, value);
+        return true;
+    }
+
+    private void insert(long key, V value) {
+        int pos = find(key);
+        if (pos >= 0) {
+            int entry = table[pos] - 1;
+            values[entry] = value;
+            moveToFront(entry);
+            return;
+        }
+
+        if (size == capacity) {
+            removeAt(find(keys[tail]));
+            evictions++;
+            pos = find(key);
+        }
+
+        int entry;
+        if (freeHead != NONE) {
+            entry = freeHead;
+            freeHead = next[entry];
+        } else {
+            entry = nextUnused++;
+        }
+        keys[entry] = key;
+        values[entry] = value;
+        table[-1 - pos] = entry + 1;
+        linkFront(entry);
+        size++;
+    }
+
+    public synchronized void remove(long key) {
+        generation++;
+        int pos = find(key);
+        if (pos >= 0) {
+            removeAt(pos);
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        Arrays.fill(table, 0);
+        Arrays.fill(values, null);
+        head = tail = freeHead = NONE;
+        nextUnused = 0;
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        return "LongLruCache[size=" + size + "/" + capacity
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", hitRate=" + (lookups == 0 ? 0 : hits * 100 / lookups) + "%]";
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Bucket holding `key`, or -1 - (free bucket where it would go).
+    private int find(long key) {
+        int i = hash(key) & mask;
+        while (table[i] != 0) {
+            if (keys[table[i] - 1] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1 - i;
+    }
+
+    private void removeAt(int pos) {
+        int entry = table[pos] - 1;
+        unlink(entry);
+        values[entry] = null;
+        next[entry] = freeHead;
+        freeHead = entry;
+        size--;
+
+        // Backward-shift deletion keeps probe chains intact without tombstones.
+        table[pos] = 0;
+        int j = pos;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == 0) {
+                return;
+            }
+            int home = hash(keys[table[j] - 1]) & mask;
+            boolean stays = pos <= j ? (pos < home && home <= j) : (pos < home || home <= j);
+            if (!stays) {
+                table[pos] = table[j];
+                table[j] = 0;
+                pos = j;
+            }
+        }
+    }
+
+    private void linkFront(int entry) {
+        prev[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE) {
+            prev[head] = entry;
+        }
+        head = entry;
+        if (tail == NONE) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(int entry) {
+        int p = prev[entry];
+        int n = next[entry];
+        if (p != NONE) {
+            next[p] = n;
+        } else {
+            head = n;
+        }
+        if (n != NONE) {
+            prev[n] = p;
+        } else {
+            tail = p;
+        }
+    }
+
+    private void moveToFront(int entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkFront(entry);
+        }
+    }
+}
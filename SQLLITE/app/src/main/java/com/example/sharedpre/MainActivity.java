@@ -1,11 +1,13 @@
 package com.example.sharedpre;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.EditText;
 import android.widget.Button;
 import android.widget.ListView;
@@ -13,19 +15,26 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.util.ArrayList;
-
 public class MainActivity extends AppCompatActivity {
 
-    private EditText nameEdt;
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
+    private EditText nameEdt, searchEdt;
     private Button addUserBtn, deleteUserBtn, updateUserBtn;
 
-    private DBHandler dbHandler;
-    private ArrayList<String> listItems;
-    private ArrayAdapter<String> adapter;
+    private AsyncDBHandler db;
+    private UserPagingAdapter adapter;
     private ListView listUsers;
 
-    private int selectedId;
+    private long selectedId;
+
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            adapter.search(searchEdt.getText().toString());
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -33,6 +42,7 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         nameEdt = findViewById(R.id.editTextName);
+        searchEdt = findViewById(R.id.editTextSearch);
 
         addUserBtn = findViewById(R.id.btnSave);
         updateUserBtn = findViewById(R.id.btnUpdate);
@@ -40,8 +50,12 @@ public class MainActivity extends AppCompatActivity {
 
         listUsers = findViewById(R.id.listViewUsers);  // Ensure this ID exists in your layout
 
-        dbHandler = new DBHandler(MainActivity.this);
-        listItems = new ArrayList<>();
+        db = new AsyncDBHandler(new DBHandler(MainActivity.this));
+        adapter = new UserPagingAdapter(MainActivity.this, db);
+        adapter.setOnLoadErrorListener(e ->
+                Toast.makeText(MainActivity.this, "Could not load users", Toast.LENGTH_SHORT).show());
+        listUsers.setAdapter(adapter);
+        db.addUserChangeListener(adapter);
 
         addUserBtn.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -53,24 +67,18 @@ public class MainActivity extends AppCompatActivity {
                     return;
                 }
 
-                dbHandler.addNewUser(name);
-                Toast.makeText(MainActivity.this, "User Added", Toast.LENGTH_SHORT).show();
+                db.addNewUser(name, result ->
+                        Toast.makeText(MainActivity.this, "User Added", Toast.LENGTH_SHORT).show());
                 nameEdt.setText("");  // Clear the input field
-
-                // Refresh list
-                viewData();
             }
         });
 
         deleteUserBtn.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                dbHandler.deleteUser(selectedId);
-                Toast.makeText(MainActivity.this, "User Deleted", Toast.LENGTH_SHORT).show();
+                db.deleteUser(selectedId, result ->
+                        Toast.makeText(MainActivity.this, "User Deleted", Toast.LENGTH_SHORT).show());
                 nameEdt.setText("");  // Clear the input field
-
-                // Refresh list
-                viewData();
             }
         });
 
@@ -84,44 +92,56 @@ public class MainActivity extends AppCompatActivity {
                     return;
                 }
 
-                dbHandler.updateUser(selectedId, name);
-                Toast.makeText(MainActivity.this, "User Updated", Toast.LENGTH_SHORT).show();
+                db.updateUser(selectedId, name, result ->
+                        Toast.makeText(MainActivity.this, "User Updated", Toast.LENGTH_SHORT).show());
                 nameEdt.setText("");  // Clear the input field
-
-                // Refresh list
-                viewData();
             }
         });
 
         viewData();
 
+        searchEdt.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                // Only query once the user pauses typing.
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+            }
+        });
+
         listUsers.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                String selectedItem = listItems.get(position);
-                Toast.makeText(getApplicationContext(), "Selected Item: " + selectedItem, Toast.LENGTH_SHORT).show();
+                User selectedUser = adapter.getItem(position);
+                Toast.makeText(getApplicationContext(), "Selected Item: " + selectedUser, Toast.LENGTH_SHORT).show();
 
-                String[] parts = selectedItem.split(":");
-                selectedId = Integer.parseInt(parts[0].trim());
-                nameEdt.setText(parts[1].trim());
+                selectedId = selectedUser.id;
+                nameEdt.setText(selectedUser.name);
             }
         });
     }
 
-    private void viewData() {
-        listItems.clear(); // Clear the list before adding new data
-
-        Cursor cursor = dbHandler.viewData();
-        if (cursor.getCount() == 0) {
-            Toast.makeText(MainActivity.this, "No data to show", Toast.LENGTH_LONG).show();
-            return;
-        }
-
-        while (cursor.moveToNext()) {
-            listItems.add(cursor.getInt(0) + " : " + cursor.getString(1)); // index 1 is name, index 0 is id
-        }
+    @Override
+    protected void onDestroy() {
+        searchHandler.removeCallbacks(searchRunnable);
+        db.removeUserChangeListener(adapter);
+        db.shutdown();
+        super.onDestroy();
+    }
 
-        adapter = new ArrayAdapter<>(MainActivity.this, android.R.layout.simple_list_item_1, listItems);
-        listUsers.setAdapter(adapter);
+    private void viewData() {
+        adapter.reload(() -> {
+            if (adapter.getCount() == 0) {
+                Toast.makeText(MainActivity.this, "No data to show", Toast.LENGTH_LONG).show();
+            }
+        });
     }
 }
\ No newline at end of file
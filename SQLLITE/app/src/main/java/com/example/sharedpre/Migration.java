@@ -0,0 +1,136 @@
+package com.example.sharedpre;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+// One schema step, applied by DBHandler.onUpgrade to move a database from
+// version - 1 to version.
+//
+// SQLiteOpenHelper runs the whole of onUpgrade in one transaction and nothing
+// else can use the database until it returns, so steps only change the schema
+// there. Copying existing rows is scheduled as a Backfill instead, which runs
+// once the database is open, one short transaction per batch.
+public abstract class Migration {
+    private static final String TAG = "Migration";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    // One row per unfinished backfill: how far it got and where it stops.
+    public static final String STATE_TABLE = "migration_state";
+
+    public interface ProgressListener {
+        void onProgress(String backfill, long done, long total);
+    }
+
+    public final int version;
+
+    protected Migration(int version) {
+        this.version = version;
+    }
+
+    public abstract void migrate(SQLiteDatabase db);
+
+    public static void createStateTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + STATE_TABLE + " ("
+                + "name TEXT PRIMARY KEY, "
+                + "last_key INTEGER NOT NULL, "
+                + "end_key INTEGER NOT NULL, "
+                + "done INTEGER NOT NULL, "
+                + "total INTEGER NOT NULL)");
+    }
+
+    // Copies rows from `source` into `target` in key order, `batchSize` rows per
+    // transaction, so readers and writers get the database between batches.
+    // Progress is kept in STATE_TABLE, so a copy cut short by the process dying
+    // carries on from the last committed batch on the next start. Only the rows
+    // present when it was scheduled are copied; keeping later changes in step
+    // (e.g. with triggers that skip keys in (last_key, end_key]) is up to the caller.
+    public static final class Backfill {
+        public final String name;
+        private final String boundQuery;
+        private final String copySql;
+        private final String scheduleSql;
+        private final int batchSize;
+
+        public Backfill(String name, String target, String targetColumns,
+                        String source, String sourceColumns, String keyColumn, int batchSize) {
+            this.name = name;
+            this.batchSize = batchSize;
+            boundQuery = "SELECT MAX(" + keyColumn + "), COUNT(*) FROM (SELECT " + keyColumn
+                    + " FROM " + source + " WHERE " + keyColumn + " > ? AND " + keyColumn + " <= ?"
+                    + " ORDER BY " + keyColumn + " LIMIT " + batchSize + ")";
+            copySql = "INSERT INTO " + target + " (" + targetColumns + ") SELECT " + sourceColumns
+                    + " FROM " + source + " WHERE " + keyColumn + " > ? AND " + keyColumn + " <= ?";
+            scheduleSql = "INSERT OR REPLACE INTO " + STATE_TABLE + " (name, last_key, end_key, done, total)"
+                    + " SELECT ?, ?, IFNULL(MAX(" + keyColumn + "), ?), 0, COUNT(*) FROM " + source;
+        }
+
+        // Queues the copy; call from Migration.migrate. `target` should be created
+        // fresh by the same step.
+        public void schedule(SQLiteDatabase db) {
+            createStateTable(db);
+            db.execSQL(scheduleSql, new Object[]{name, Long.MIN_VALUE, Long.MIN_VALUE});
+        }
+
+        // Copies the next batch in its own transaction. Returns false once there is
+        // nothing left, having removed the state row.
+        public boolean runBatch(SQLiteDatabase db, @Nullable ProgressListener listener) {
+            long done;
+            long total;
+            db.beginTransaction();
+            try {
+                // Databases created before backfills existed have no state table.
+                createStateTable(db);
+                long lastKey;
+                long endKey;
+                Cursor state = db.rawQuery("SELECT last_key, end_key, done, total FROM " + STATE_TABLE
+                        + " WHERE name = ?", new String[]{name});
+                try {
+                    if (!state.moveToFirst()) {
+                        return false;
+                    }
+                    lastKey = state.getLong(0);
+                    endKey = state.getLong(1);
+                    done = state.getLong(2);
+                    total = state.getLong(3);
+                } finally {
+                    state.close();
+                }
+
+                long batchEnd;
+                long batchRows;
+                Cursor bound = db.rawQuery(boundQuery,
+                        new String[]{String.valueOf(lastKey), String.valueOf(endKey)});
+                try {
+                    bound.moveToFirst();
+                    batchEnd = bound.isNull(0) ? lastKey : bound.getLong(0);
+                    batchRows = bound.getLong(1);
+                } finally {
+                    bound.close();
+                }
+
+                if (batchRows == 0) {
+                    db.delete(STATE_TABLE, "name = ?", new String[]{name});
+                    db.setTransactionSuccessful();
+                    Log.i(TAG, name + ": backfill finished, " + done + " rows");
+                    return false;
+                }
+
+                db.execSQL(copySql, new Object[]{lastKey, batchEnd});
+                done += batchRows;
+                db.execSQL("UPDATE " + STATE_TABLE + " SET last_key = ?, done = ? WHERE name = ?",
+                        new Object[]{batchEnd, done, name});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            if (listener != null) {
+                listener.onProgress(name, done, total);
+            }
+            Log.d(TAG, name + ": copied " + done + "/" + total + " rows (batches of " + batchSize + ")");
+            return true;
+        }
+    }
+}
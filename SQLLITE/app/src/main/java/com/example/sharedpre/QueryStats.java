@@ -0,0 +1,145 @@
+package com.example.sharedpre;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-operation latency histograms and row counts for DBHandler. Operations
+// slower than the threshold are logged together with their EXPLAIN QUERY PLAN.
+public class QueryStats {
+    private static final String TAG = "QueryStats";
+    public static final long DEFAULT_SLOW_QUERY_MS = 50;
+
+    // Bucket i counts calls that took less than 2^i microseconds; the last bucket is open-ended.
+    private static final int BUCKETS = 24;
+
+    private static class OpStats {
+        final long[] buckets = new long[BUCKETS];
+        long calls;
+        long rows;
+        long totalNanos;
+        long maxNanos;
+        long slowCalls;
+    }
+
+    private final ConcurrentHashMap<String, OpStats> ops = new ConcurrentHashMap<>();
+    private volatile long slowQueryNanos = DEFAULT_SLOW_QUERY_MS * 1_000_000L;
+
+    public void setSlowQueryThresholdMs(long ms) {
+        slowQueryNanos = ms * 1_000_000L;
+    }
+
+    // System.nanoTime() rather than SystemClock, whose clock stands still under
+    // Robolectric and would make every rate come out as zero in JVM tests.
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    // Records one call of `op` that began at `startNanos` (from start()) and touched `rows` rows.
+    // `sql`/`args` are only used to explain the query if it turns out to be slow.
+    public void record(String op, long startNanos, long rows,
+                       @Nullable SQLiteDatabase db, @Nullable String sql, @Nullable String[] args) {
+        long nanos = System.nanoTime() - startNanos;
+        boolean slow = nanos >= slowQueryNanos;
+
+        OpStats stats = ops.get(op);
+        if (stats == null) {
+            ops.putIfAbsent(op, new OpStats());
+            stats = ops.get(op);
+        }
+        synchronized (stats) {
+            long micros = nanos / 1000;
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            stats.buckets[bucket]++;
+            stats.calls++;
+            stats.rows += rows;
+            stats.totalNanos += nanos;
+            stats.maxNanos = Math.max(stats.maxNanos, nanos);
+            if (slow) {
+                stats.slowCalls++;
+            }
+        }
+
+        if (slow) {
+            Log.w(TAG, String.format(Locale.ROOT, "Slow %s: %.1f ms, %d rows%s", op, nanos / 1e6, rows,
+                    sql == null ? "" : "\n  " + sql + (db == null ? "" : "\n" + explain(db, sql, args))));
+        }
+    }
+
+    // Rows per second over every call of `op` so far, or 0 if it hasn't run.
+    public double rowsPerSecond(String op) {
+        OpStats stats = ops.get(op);
+        if (stats == null) {
+            return 0;
+        }
+        synchronized (stats) {
+            return rate(stats);
+        }
+    }
+
+    private static double rate(OpStats stats) {
+        return stats.totalNanos == 0 ? 0 : stats.rows * 1e9 / stats.totalNanos;
+    }
+
+    private static String explain(SQLiteDatabase db, String sql, @Nullable String[] args) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detail = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.append("  plan: ").append(cursor.getString(detail)).append('\n');
+            }
+        } catch (RuntimeException e) {
+            plan.append("  plan unavailable: ").append(e.getMessage());
+        }
+        return plan.toString();
+    }
+
+    public void reset() {
+        ops.clear();
+    }
+
+    // Human-readable summary of every operation seen so far, e.g. for logcat or a bug report.
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        Map<String, OpStats> sorted = new TreeMap<>(ops);
+        for (Map.Entry<String, OpStats> entry : sorted.entrySet()) {
+            OpStats stats = entry.getValue();
+            synchronized (stats) {
+                if (stats.calls == 0) {
+                    continue;
+                }
+                out.append(String.format(Locale.ROOT,
+                        "%-12s calls=%d rows=%d rows/s=%.0f avg=%.2fms p50<%s p95<%s p99<%s max=%.2fms slow=%d%n",
+                        entry.getKey(), stats.calls, stats.rows, rate(stats),
+                        stats.totalNanos / 1e6 / stats.calls,
+                        percentile(stats, 0.50), percentile(stats, 0.95), percentile(stats, 0.99),
+                        stats.maxNanos / 1e6, stats.slowCalls));
+            }
+        }
+        return out.toString();
+    }
+
+    // Upper bound of the bucket holding the given quantile.
+    private static String percentile(OpStats stats, double quantile) {
+        long target = (long) Math.ceil(stats.calls * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += stats.buckets[i];
+            if (seen >= target) {
+                if (i == BUCKETS - 1) {
+                    return "inf";
+                }
+                long micros = 1L << i;
+                return micros >= 1000 ? (micros / 1000) + "ms" : micros + "us";
+            }
+        }
+        return "inf";
+    }
+}
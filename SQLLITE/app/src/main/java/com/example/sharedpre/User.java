@@ -0,0 +1,17 @@
+package com.example.sharedpre;
+
+// A row of the users table.
+public class User {
+    public final long id;
+    public final String name;
+
+    public User(long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return id + " : " + name;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.sharedpre;
+
+import java.util.Arrays;
+
+// Users stored column-wise: a primitive long[] of ids and a parallel array of
+// names, so holding thousands of rows costs two arrays rather than an object
+// per row. Ids are kept in ascending order when rows are appended in id order.
+public class UserList {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] ids;
+    private String[] names;
+    private int size;
+
+    public UserList() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public UserList(int capacity) {
+        ids = new long[Math.max(1, capacity)];
+        names = new String[Math.max(1, capacity)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getId(int position) {
+        return ids[position];
+    }
+
+    public String getName(int position) {
+        return names[position];
+    }
+
+    public User get(int position) {
+        return new User(ids[position], names[position]);
+    }
+
+    public void add(long id, String name) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        ids[size] = id;
+        names[size] = name;
+        size++;
+    }
+
+    public void addAll(UserList other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.ids[i], other.names[i]);
+        }
+    }
+
+    public void setName(int position, String name) {
+        names[position] = name;
+    }
+
+    public void remove(int position) {
+        int moved = size - position - 1;
+        System.arraycopy(ids, position + 1, ids, position, moved);
+        System.arraycopy(names, position + 1, names, position, moved);
+        size--;
+        names[size] = null;
+    }
+
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        size = 0;
+    }
+
+    // Position of `id`, or a negative value if absent. Requires ascending ids.
+    public int indexOfId(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+}
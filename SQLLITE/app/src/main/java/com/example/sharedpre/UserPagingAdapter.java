@@ -0,0 +1,242 @@
+package com.example.sharedpre;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import androidx.annotation.Nullable;
+
+// List adapter that loads users page by page (keyset on id) as the list scrolls,
+// instead of reading the whole table up front. Edits reported by DBHandler are
+// patched into the loaded rows rather than reloading the list. Rows are bound
+// straight from the column storage in UserList.
+public class UserPagingAdapter extends BaseAdapter implements DBHandler.UserChangeListener {
+    private static final String TAG = "UserPagingAdapter";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int DEFAULT_PREFETCH_DISTANCE = 10;
+    public static final int SEARCH_LIMIT = 100;
+
+    private final Context context;
+    private final AsyncDBHandler db;
+    private final int pageSize;
+    private final int prefetchDistance;
+
+    private final UserList users = new UserList();
+    private long lastId = 0;
+    private boolean endReached = false;
+    private boolean loading = false;
+    // While showing search results, paging and appended inserts are off.
+    private boolean searching = false;
+    // Bumped on reload so pages requested before it are ignored.
+    private int generation = 0;
+
+    public interface OnLoadErrorListener {
+        void onLoadError(Exception e);
+    }
+
+    @Nullable
+    private OnLoadErrorListener errorListener;
+
+    public UserPagingAdapter(Context context, AsyncDBHandler db) {
+        this(context, db, DEFAULT_PAGE_SIZE, DEFAULT_PREFETCH_DISTANCE);
+    }
+
+    public UserPagingAdapter(Context context, AsyncDBHandler db, int pageSize, int prefetchDistance) {
+        this.context = context;
+        this.db = db;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    // Drops everything loaded so far and loads the first page again.
+    // onLoaded, if given, runs on the main thread once the first page is in.
+    public void reload(@Nullable Runnable onLoaded) {
+        users.clear();
+        lastId = 0;
+        endReached = false;
+        loading = false;
+        searching = false;
+        generation++;
+        notifyDataSetChanged();
+        loadNextPage(onLoaded);
+    }
+
+    private void loadNextPage(@Nullable Runnable onLoaded) {
+        if (endReached || loading) {
+            return;
+        }
+
+        loading = true;
+        final int requestGeneration = generation;
+        db.viewPage(lastId, pageSize, new AsyncDBHandler.Callback<UserList>() {
+            @Override
+            public void onResult(UserList page) {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                loading = false;
+                for (int i = 0; i < page.size(); i++) {
+                    long id = page.getId(i);
+                    // Rows inserted while the page was in flight may already be here.
+                    if (id > lastId) {
+                        users.add(id, page.getName(i));
+                        lastId = id;
+                    }
+                }
+                if (page.size() < pageSize) {
+                    endReached = true;
+                }
+                notifyDataSetChanged();
+                if (onLoaded != null) {
+                    onLoaded.run();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                // Let the next scroll try this page again.
+                loading = false;
+                reportError(e);
+            }
+        });
+    }
+
+    // Replaces the list with the users whose name matches `prefix`;
+    // an empty prefix goes back to the paged list.
+    public void search(String prefix) {
+        if (prefix.trim().isEmpty()) {
+            if (searching) {
+                reload(null);
+            }
+            return;
+        }
+
+        searching = true;
+        endReached = true;
+        loading = false;
+        final int requestGeneration = ++generation;
+        db.searchUsers(prefix, SEARCH_LIMIT, new AsyncDBHandler.Callback<UserList>() {
+            @Override
+            public void onResult(UserList page) {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                users.clear();
+                users.addAll(page);
+                notifyDataSetChanged();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (requestGeneration == generation) {
+                    reportError(e);
+                }
+            }
+        });
+    }
+
+    // Called on the main thread when a page or search could not be read.
+    public void setOnLoadErrorListener(@Nullable OnLoadErrorListener listener) {
+        errorListener = listener;
+    }
+
+    private void reportError(Exception e) {
+        Log.e(TAG, "Loading users failed", e);
+        if (errorListener != null) {
+            errorListener.onLoadError(e);
+        }
+    }
+
+    @Override
+    public void onUserChanged(int op, long id, @Nullable String name) {
+        // ids are loaded in ascending order, so the row can be found by binary search.
+        int position = users.indexOfId(id);
+        switch (op) {
+            case DBHandler.OP_INSERT:
+                // New ids are always the largest; only show them once the tail is loaded.
+                if (endReached && !loading && !searching && position < 0) {
+                    users.add(id, name);
+                    lastId = id;
+                    notifyDataSetChanged();
+                }
+                break;
+            case DBHandler.OP_UPDATE:
+                if (position >= 0) {
+                    users.setName(position, name);
+                    notifyDataSetChanged();
+                }
+                break;
+            case DBHandler.OP_DELETE:
+                if (position >= 0) {
+                    users.remove(position);
+                    notifyDataSetChanged();
+                }
+                break;
+        }
+    }
+
+    public long getUserId(int position) {
+        return users.getId(position);
+    }
+
+    public String getUserName(int position) {
+        return users.getName(position);
+    }
+
+    @Override
+    public int getCount() {
+        return users.size();
+    }
+
+    @Override
+    public User getItem(int position) {
+        return users.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return users.getId(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        if (position >= users.size() - prefetchDistance) {
+            loadNextPage(null);
+        }
+
+        View view = convertView;
+        ViewHolder holder;
+        if (view == null) {
+            view = LayoutInflater.from(context).inflate(android.R.layout.simple_list_item_1, parent, false);
+            holder = new ViewHolder((TextView) view.findViewById(android.R.id.text1));
+            view.setTag(holder);
+        } else {
+            holder = (ViewHolder) view.getTag();
+        }
+
+        holder.text.setText(users.getId(position) + " : " + users.getName(position));
+        return view;
+    }
+
+    private static class ViewHolder {
+        // Saves a findViewById per bind. setText() copies its argument into a
+        // String, so the label itself is built fresh each time.
+        final TextView text;
+
+        ViewHolder(TextView text) {
+            this.text = text;
+        }
+    }
+}
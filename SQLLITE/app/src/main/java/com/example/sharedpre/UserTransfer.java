@@ -0,0 +1,238 @@
+package com.example.sharedpre;
+
+import android.database.Cursor;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+// Streaming CSV / JSON import and export of the users table. Imports read the
+// input incrementally and commit every CHUNK_SIZE rows through
+// DBHandler.addNewUsers; exports write straight from the cursor. Memory use
+// stays bounded by one chunk either way. Calls block, so run them on
+// AsyncDBHandler's writer (imports) or a reader (exports).
+//
+// CSV files have an "id,name" header; JSON files are an array of
+// {"id": .., "name": ..} objects (bare strings are accepted on import).
+// Imported rows always get new ids.
+public class UserTransfer {
+    public static final int CHUNK_SIZE = 1000;
+
+    public interface ProgressListener {
+        void onProgress(long rows);
+    }
+
+    private final DBHandler dbHandler;
+
+    public UserTransfer(DBHandler dbHandler) {
+        this.dbHandler = dbHandler;
+    }
+
+    public long importCsv(InputStream in, @Nullable ProgressListener listener) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        ArrayList<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        ArrayList<String> record = new ArrayList<>(2);
+        long imported = 0;
+        boolean first = true;
+
+        while (readCsvRecord(reader, record)) {
+            if (first) {
+                first = false;
+                if (isHeader(record)) {
+                    continue;
+                }
+            }
+            String name = record.size() > 1 ? record.get(1) : record.get(0);
+            if (name.isEmpty()) {
+                continue;
+            }
+            chunk.add(name);
+            if (chunk.size() == CHUNK_SIZE) {
+                imported += flush(chunk, imported, listener);
+            }
+        }
+        imported += flush(chunk, imported, listener);
+        return imported;
+    }
+
+    public long importJson(InputStream in, @Nullable ProgressListener listener) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        ArrayList<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        long imported = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = null;
+            if (reader.peek() == JsonToken.STRING) {
+                name = reader.nextString();
+            } else {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("name".equals(reader.nextName()) && reader.peek() != JsonToken.NULL) {
+                        name = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+
+            if (name != null && !name.isEmpty()) {
+                chunk.add(name);
+                if (chunk.size() == CHUNK_SIZE) {
+                    imported += flush(chunk, imported, listener);
+                }
+            }
+        }
+        reader.endArray();
+        imported += flush(chunk, imported, listener);
+        return imported;
+    }
+
+    public long exportCsv(OutputStream out, @Nullable ProgressListener listener) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long exported = 0;
+
+        writer.write("id,name\n");
+        Cursor cursor = dbHandler.viewData();
+        try {
+            while (cursor.moveToNext()) {
+                writer.write(Long.toString(cursor.getLong(0)));
+                writer.write(',');
+                writeCsvField(writer, cursor.isNull(1) ? "" : cursor.getString(1));
+                writer.write('\n');
+                exported++;
+                if (listener != null && exported % CHUNK_SIZE == 0) {
+                    listener.onProgress(exported);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        writer.flush();
+        if (listener != null) {
+            listener.onProgress(exported);
+        }
+        return exported;
+    }
+
+    public long exportJson(OutputStream out, @Nullable ProgressListener listener) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        long exported = 0;
+
+        writer.beginArray();
+        Cursor cursor = dbHandler.viewData();
+        try {
+            while (cursor.moveToNext()) {
+                writer.beginObject();
+                writer.name("id").value(cursor.getLong(0));
+                writer.name("name").value(cursor.isNull(1) ? null : cursor.getString(1));
+                writer.endObject();
+                exported++;
+                if (listener != null && exported % CHUNK_SIZE == 0) {
+                    listener.onProgress(exported);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        writer.endArray();
+        writer.flush();
+        if (listener != null) {
+            listener.onProgress(exported);
+        }
+        return exported;
+    }
+
+    private long flush(ArrayList<String> chunk, long importedSoFar, @Nullable ProgressListener listener) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        int inserted = dbHandler.addNewUsers(chunk);
+        chunk.clear();
+        if (listener != null) {
+            listener.onProgress(importedSoFar + inserted);
+        }
+        return inserted;
+    }
+
+    private static boolean isHeader(ArrayList<String> record) {
+        String last = record.get(record.size() - 1).trim();
+        return last.equalsIgnoreCase("name");
+    }
+
+    // Reads one RFC 4180 record into `record`. Quoted fields may contain commas,
+    // doubled quotes and line breaks. Returns false at end of input.
+    private static boolean readCsvRecord(Reader reader, ArrayList<String> record) throws IOException {
+        record.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                if (record.isEmpty() && field.length() == 0) {
+                    // Skip blank lines.
+                    any = false;
+                    continue;
+                }
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+
+        if (!any) {
+            return false;
+        }
+        record.add(field.toString());
+        return true;
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean needsQuotes = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!needsQuotes) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.sharedpre;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+/**
+ * Throughput benchmark for DBHandler, run on the host JVM through Robolectric's
+ * native SQLite.
+ *
+ * See {@link Benchmarks} for how to run it; -Pbenchmark.sizes=1000,100000 picks
+ * the table sizes. Results go to db_handler.json.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DBHandlerBenchmark {
+    private static final String DEFAULT_SIZES = "1000,100000,1000000";
+    // Single-row operations timed per table size; the table itself is seeded in bulk.
+    private static final int MAX_OPS = 10_000;
+    private static final int WARMUP_OPS = 1_000;
+    private static final int SEED_BATCH = 50_000;
+
+    private Context context;
+    private DBHandler dbHandler;
+    private final Benchmarks benchmarks = new Benchmarks();
+
+    @Before
+    public void setUp() {
+        Benchmarks.assumeEnabled();
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        if (dbHandler != null) {
+            dbHandler.close();
+            context.deleteDatabase("usersdb");
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        for (String size : System.getProperty("benchmark.sizes", DEFAULT_SIZES).split(",")) {
+            run(Integer.parseInt(size.trim()));
+        }
+        benchmarks.writeJson("db_handler");
+    }
+
+    private void run(int rows) throws Exception {
+        context.deleteDatabase("usersdb");
+        dbHandler = new DBHandler(context);
+        seed(rows);
+        benchmarks.record("op", "addNewUsers (seed)", "rows", rows)
+                .put("rowsPerSecond", dbHandler.getQueryStats().rowsPerSecond("addNewUsers"));
+
+        // Warmup and timed ops each get their own ids, so together they must fit in the table.
+        int ops = Math.min(rows / 2, MAX_OPS);
+        int warmupOps = Math.min(ops, WARMUP_OPS);
+        long[] lastId = new long[1];
+        measure("addNewUser", rows, warmupOps, ops, i -> dbHandler.addNewUser("added " + i));
+        measure("updateUser", rows, warmupOps, ops, i -> dbHandler.updateUser(++lastId[0], "updated " + i));
+        lastId[0] = 0;
+        measure("deleteUser", rows, warmupOps, ops, i -> dbHandler.deleteUser(++lastId[0]));
+        // One op is a full scan of the table.
+        measure("viewData", rows, 1, 1, i -> {
+            Cursor cursor = dbHandler.viewData();
+            try {
+                while (cursor.moveToNext()) {
+                    cursor.getInt(0);
+                    cursor.getString(1);
+                }
+            } finally {
+                cursor.close();
+            }
+        });
+
+        dbHandler.close();
+        dbHandler = null;
+        context.deleteDatabase("usersdb");
+    }
+
+    private void seed(int rows) {
+        ArrayList<String> names = new ArrayList<>(Math.min(rows, SEED_BATCH));
+        for (int i = 0; i < rows; i++) {
+            names.add("user " + i);
+            if (names.size() == SEED_BATCH) {
+                dbHandler.addNewUsers(names);
+                names.clear();
+            }
+        }
+        if (!names.isEmpty()) {
+            dbHandler.addNewUsers(names);
+        }
+    }
+
+    private void measure(String op, int rows, int warmupOps, int ops, Benchmarks.Op body) throws Exception {
+        benchmarks.measure(warmupOps, ops, body, "op", op, "rows", rows);
+    }
+}
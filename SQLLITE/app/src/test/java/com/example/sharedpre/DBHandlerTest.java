@@ -0,0 +1,80 @@
+package com.example.sharedpre;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DBHandlerTest {
+    private Context context;
+    private DBHandler dbHandler;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase("usersdb");
+        dbHandler = new DBHandler(context);
+    }
+
+    @After
+    public void tearDown() {
+        dbHandler.close();
+        context.deleteDatabase("usersdb");
+    }
+
+    @Test
+    public void updateBetweenReadAndFillIsNotUndone() {
+        long id = dbHandler.addNewUser("Ada");
+        dbHandler.getUserCache().clear();
+
+        // The read sees "Ada"; the writer commits "Grace" before the read fills the cache.
+        dbHandler.beforeUserCacheFill = () -> dbHandler.updateUser(id, "Grace");
+        assertEquals("Ada", dbHandler.getUser(id));
+        dbHandler.beforeUserCacheFill = null;
+
+        assertEquals("Grace", dbHandler.getUser(id));
+    }
+
+    @Test
+    public void deleteBetweenReadAndFillIsNotUndone() {
+        long id = dbHandler.addNewUser("Ada");
+        dbHandler.getUserCache().clear();
+
+        dbHandler.beforeUserCacheFill = () -> dbHandler.deleteUser(id);
+        assertEquals("Ada", dbHandler.getUser(id));
+        dbHandler.beforeUserCacheFill = null;
+
+        assertNull(dbHandler.getUser(id));
+    }
+
+    @Test
+    public void updateWritesThroughToTheCache() {
+        long id = dbHandler.addNewUser("Ada");
+        dbHandler.updateUser(id, "Grace");
+
+        long hits = dbHandler.getUserCache().hitCount();
+        assertEquals("Grace", dbHandler.getUser(id));
+        assertEquals(hits + 1, dbHandler.getUserCache().hitCount());
+    }
+
+    @Test
+    public void bulkInsertRateIsMeasured() {
+        assertEquals(3, dbHandler.addNewUsers(Arrays.asList("Ada", "Grace", "Edsger")));
+
+        assertTrue(dbHandler.getQueryStats().rowsPerSecond("addNewUsers") > 0);
+    }
+}
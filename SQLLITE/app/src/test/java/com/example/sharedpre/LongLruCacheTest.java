@@ -0,0 +1,148 @@
+package com.example.sharedpre;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongLruCacheTest {
+
+    @Test
+    public void getReturnsWhatWasPut() {
+        LongLruCache<String> cache = new LongLruCache<>(4);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(1, "uno");
+
+        assertEquals("uno", cache.get(1));
+        assertEquals("two", cache.get(2));
+        assertNull(cache.get(3));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LongLruCache<String> cache = new LongLruCache<>(3);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.put(3, "three");
+        cache.get(1);
+        cache.put(4, "four");
+
+        assertNull(cache.get(2));
+        assertEquals("one", cache.get(1));
+        assertEquals("three", cache.get(3));
+        assertEquals("four", cache.get(4));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void removedSlotsAreReused() {
+        LongLruCache<String> cache = new LongLruCache<>(2);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.remove(1);
+        cache.put(3, "three");
+
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.evictionCount());
+        assertEquals("two", cache.get(2));
+        assertEquals("three", cache.get(3));
+    }
+
+    @Test
+    public void clearEmptiesTheCache() {
+        LongLruCache<String> cache = new LongLruCache<>(4);
+        for (long key = 0; key < 4; key++) {
+            cache.put(key, "v" + key);
+        }
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        for (long key = 0; key < 4; key++) {
+            assertNull(cache.get(key));
+        }
+        cache.put(9, "nine");
+        assertEquals("nine", cache.get(9));
+    }
+
+    @Test
+    public void everyKeyStaysReachableAfterRemovals() {
+        // Removing a key must not cut off keys that probed past its bucket.
+        int capacity = 64;
+        LongLruCache<Long> cache = new LongLruCache<>(capacity);
+        for (long key = 0; key < capacity; key++) {
+            cache.put(key, key);
+        }
+        for (long key = 0; key < capacity; key += 3) {
+            cache.remove(key);
+        }
+        for (long key = 0; key < capacity; key++) {
+            if (key % 3 == 0) {
+                assertNull(cache.get(key));
+            } else {
+                assertEquals(Long.valueOf(key), cache.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void matchesAnAccessOrderedLinkedHashMap() {
+        int capacity = 50;
+        LongLruCache<Long> cache = new LongLruCache<>(capacity);
+        Map<Long, Long> model = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        Random random = new Random(7);
+        for (int step = 0; step < 200_000; step++) {
+            long key = random.nextInt(120) - 20;
+            int op = random.nextInt(10);
+            if (op < 4) {
+                assertEquals("get " + key + " at step " + step, model.get(key), cache.get(key));
+            } else if (op < 8) {
+                model.put(key, (long) step);
+                cache.put(key, (long) step);
+            } else {
+                model.remove(key);
+                cache.remove(key);
+            }
+            assertEquals(model.size(), cache.size());
+        }
+    }
+
+    @Test
+    public void fillIsDroppedAfterAConcurrentWrite() {
+        LongLruCache<String> cache = new LongLruCache<>(4);
+        long beforeRemove = cache.generation();
+        cache.remove(1);
+        assertFalse(cache.putIfUnchanged(1, "stale", beforeRemove));
+        assertNull(cache.get(1));
+
+        long beforePut = cache.generation();
+        cache.put(1, "new");
+        assertFalse(cache.putIfUnchanged(1, "stale", beforePut));
+        assertEquals("new", cache.get(1));
+
+        long current = cache.generation();
+        assertTrue(cache.putIfUnchanged(2, "two", current));
+        assertEquals("two", cache.get(2));
+    }
+
+    @Test
+    public void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new LongLruCache<String>(0));
+    }
+}
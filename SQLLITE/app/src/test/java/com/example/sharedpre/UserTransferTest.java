@@ -0,0 +1,134 @@
+package com.example.sharedpre;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class UserTransferTest {
+    private Context context;
+    private DBHandler dbHandler;
+    private UserTransfer transfer;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase("usersdb");
+        dbHandler = new DBHandler(context);
+        transfer = new UserTransfer(dbHandler);
+        // Start from an empty table rather than the row onCreate seeds.
+        for (long id : ids()) {
+            dbHandler.deleteUser(id);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbHandler.close();
+        context.deleteDatabase("usersdb");
+    }
+
+    @Test
+    public void csvQuotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        long imported = importCsv("id,name\r\n"
+                + "1,\"Lovelace, Ada\"\r\n"
+                + "2,\"Grace \"\"Amazing\"\" Hopper\"\r\n"
+                + "3,\"two\nlines\"\r\n"
+                + "4,plain\r\n");
+
+        assertEquals(4, imported);
+        assertEquals(Arrays.asList("Lovelace, Ada", "Grace \"Amazing\" Hopper", "two\nlines", "plain"), names());
+    }
+
+    @Test
+    public void csvWithoutHeaderOrIdColumnIsImported() throws IOException {
+        assertEquals(2, importCsv("Ada\nAlan"));
+        assertEquals(Arrays.asList("Ada", "Alan"), names());
+    }
+
+    @Test
+    public void csvBlankLinesAndEmptyNamesAreSkipped() throws IOException {
+        assertEquals(2, importCsv("id,name\n\n1,Ada\n2,\n\n3,Alan\n\n"));
+        assertEquals(Arrays.asList("Ada", "Alan"), names());
+    }
+
+    @Test
+    public void csvImportCommitsInChunksAndReportsProgress() throws IOException {
+        int rows = UserTransfer.CHUNK_SIZE * 2 + 5;
+        StringBuilder csv = new StringBuilder("id,name\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append(i).append(",user ").append(i).append('\n');
+        }
+        ArrayList<Long> progress = new ArrayList<>();
+
+        long imported = transfer.importCsv(stream(csv.toString()), progress::add);
+
+        assertEquals(rows, imported);
+        assertEquals(rows, names().size());
+        assertEquals(Arrays.asList((long) UserTransfer.CHUNK_SIZE, (long) UserTransfer.CHUNK_SIZE * 2, (long) rows),
+                progress);
+    }
+
+    @Test
+    public void csvExportReadsBackTheSameNames() throws IOException {
+        List<String> original = Arrays.asList("Ada", "Lovelace, Ada", "say \"hi\"", "two\r\nlines");
+        dbHandler.addNewUsers(original);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(original.size(), transfer.exportCsv(out, null));
+        for (long id : ids()) {
+            dbHandler.deleteUser(id);
+        }
+
+        assertEquals(original.size(), importCsv(out.toString("UTF-8")));
+        // The CR in "two\r\nlines" survives because the export quotes the field.
+        assertEquals(original, names());
+    }
+
+    private long importCsv(String csv) throws IOException {
+        return transfer.importCsv(stream(csv), null);
+    }
+
+    private static ByteArrayInputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Long> ids() {
+        ArrayList<Long> ids = new ArrayList<>();
+        try (Cursor cursor = dbHandler.viewData()) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        }
+        return ids;
+    }
+
+    private List<String> names() {
+        ArrayList<String> names = new ArrayList<>();
+        try (Cursor cursor = dbHandler.viewData()) {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(1));
+            }
+        }
+        return names;
+    }
+}